@@ -0,0 +1,97 @@
+package ctu.fel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Inputs shared by the benchmarks, loaded the same way as by Main
+ */
+final class BenchmarkData {
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param graphPath path to a graph snapshot ending with ".graph", the prefix of the CSV files
+     *                  prefix_nodes.csv, prefix_edges.csv and prefix_goals.csv, or "generated:numNodes" for a graph
+     *                  of GraphGenerator, generated once into generated_numNodes.graph
+     * @return  the loaded graph
+     * @throws IOException  if the files cannot be read
+     */
+    static Graph loadGraph(String graphPath) throws IOException {
+        graphPath = resolveGenerated(graphPath);
+        if (graphPath.endsWith(".graph")) {
+            return new Graph(graphPath);
+        }
+        return new Graph(graphPath + "_nodes.csv", graphPath + "_edges.csv", graphPath + "_goals.csv");
+    }
+
+    /**
+     * Loads the cover saved next to the graph, or builds and saves it
+     * @param graph graph of the cover
+     * @param graphPath path the graph was loaded from
+     * @param k the cover path size
+     * @return  the cover
+     * @throws IOException  if a built cover cannot be saved
+     */
+    static KPC loadCover(Graph graph, String graphPath, int k) throws IOException {
+        String coverPath = resolveGenerated(graphPath).replaceFirst("\\.graph$", "") + "_" + k + ".kpc";
+        try {
+            return new KPC(graph, k, coverPath);
+        }
+        catch (IOException e) {
+            KPC kpc = new KPC(graph, k);
+            kpc.save(graph, coverPath, true);
+            return kpc;
+        }
+    }
+
+    /**
+     * Loads the landmarks saved next to the graph, or computes and saves them
+     * @param graph graph of the landmarks
+     * @param graphPath path the graph was loaded from
+     * @param numLandmarks  number of landmarks
+     * @return  the landmarks
+     * @throws IOException  if computed landmarks cannot be saved
+     */
+    static Landmarks loadLandmarks(Graph graph, String graphPath, int numLandmarks) throws IOException {
+        String landmarkPath = resolveGenerated(graphPath).replaceFirst("\\.graph$", "") + "_" + numLandmarks +
+                ".landmarks";
+        try {
+            return new Landmarks(graph, landmarkPath);
+        }
+        catch (IOException e) {
+            Landmarks landmarks = new Landmarks(graph, numLandmarks);
+            landmarks.save(graph, landmarkPath);
+            return landmarks;
+        }
+    }
+
+    /**
+     * @return  path of the snapshot of a generated graph, graphPath itself for other graphs
+     * @throws IOException  if the generated graph cannot be written
+     */
+    private static String resolveGenerated(String graphPath) throws IOException {
+        if (!graphPath.startsWith("generated:")) {
+            return graphPath;
+        }
+        int numNodes = Integer.parseInt(graphPath.substring("generated:".length()));
+        String snapshotPath = "generated_" + numNodes + ".graph";
+        if (!new File(snapshotPath).exists()) {
+            new GraphGenerator(numNodes, 42).writeSnapshot(snapshotPath);
+        }
+        return snapshotPath;
+    }
+
+    /**
+     * @return  fixed pseudo-random source nodes
+     */
+    static int[] getSources(Graph graph, int numSources, long seed) {
+        Random random = new Random(seed);
+        int[] sources = new int[numSources];
+        for (int s = 0; s < numSources; ++s) {
+            sources[s] = random.nextInt(graph.getNumNodes());
+        }
+        return sources;
+    }
+}
@@ -0,0 +1,184 @@
+package ctu.fel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-benchmarks of the inner operations of the searches on the Pareto set of a node, one operation tests
+ * or links every query label once. The Pareto set is a Pareto filter of labels drawn around a trade-off surface,
+ * so its labels are mutually non-dominated and sorted by time as in OpenFrontier. The query labels are not in the set,
+ * half of them are a worsened label of the set and dominated, the other half improve one parameter of a label
+ * of the set and are not dominated, so their scans run over the whole range.
+ * openFrontier runs the column-wise scan of DominanceKernel.
+ * tDiscards and updating the tSet run on TSet.dominates() and TSet.add().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DominanceBenchmark {
+    private static final int MAX_TIME = 100000;
+
+    @Param({"16", "128", "1024"})
+    public int numLabels;
+
+    // Pareto set, as parameter rows and in a frontier
+    private int[] parameters;
+    private OpenFrontier frontier;
+
+    private int[][] queries;
+    private int[] queryParameters;
+    private int[] linked;
+    private TSet tSet;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<int[]> paretoSet = getParetoSet(random);
+        paretoSet.sort(Comparator.comparingInt(label -> label[0]));
+
+        parameters = new int[4 * numLabels];
+        frontier = new OpenFrontier(numLabels);
+        for (int i = 0; i < numLabels; ++i) {
+            int[] label = paretoSet.get(i);
+            System.arraycopy(label, 0, parameters, 4 * i, 4);
+            frontier.add(i, label);
+        }
+
+        queries = new int[numLabels][];
+        queryParameters = new int[4 * numLabels];
+        for (int q = 0; q < numLabels; ++q) {
+            int[] query = paretoSet.get(random.nextInt(numLabels)).clone();
+            if (q % 2 == 0) {
+                // Worse in every parameter, dominated by the label it is derived from
+                query[0] += 1 + random.nextInt(MAX_TIME / 100);
+                query[1] += 1 + random.nextInt(Planner.getBatteryCapacity() / 100);
+                query[2] += 1 + random.nextInt(Planner.getBatteryCapacity() / 100);
+                query[3] -= 1 + random.nextInt(Planner.getBatteryCapacity() / 100);
+            }
+            else {
+                // Better in one parameter, a label dominating it would dominate the label it is derived from
+                int p = random.nextInt(4);
+                query[p] += Planner.getMaximize(p) ? 1 : -1;
+            }
+            queries[q] = query;
+            System.arraycopy(query, 0, queryParameters, 4 * q, 4);
+        }
+        if (dominanceCheck() != numLabels / 2) {
+            throw new IllegalStateException("Half of the queries are expected to be dominated");
+        }
+
+        linked = new int[4];
+        tSet = fillTSet();
+    }
+
+    /**
+     * Draws labels around the surface where the normalized parameters sum up to one and keeps the non-dominated ones
+     * until the set has numLabels labels
+     */
+    private List<int[]> getParetoSet(Random random) {
+        List<int[]> paretoSet = new ArrayList<>();
+        int halfCapacity = Planner.getBatteryCapacity() / 2;
+        while (paretoSet.size() < numLabels) {
+            double[] weights = new double[4];
+            double sum = 0;
+            for (int p = 0; p < 4; ++p) {
+                weights[p] = -Math.log(1 - random.nextDouble()) * (0.95 + 0.1 * random.nextDouble());
+                sum += weights[p];
+            }
+            int[] label = {(int) (MAX_TIME * weights[0] / sum), 1 + (int) (halfCapacity * weights[1] / sum),
+                    1 + (int) (halfCapacity * weights[2] / sum),
+                    Planner.getBatteryCapacity() - 1 - (int) (halfCapacity * weights[3] / sum)};
+
+            boolean dominated = false;
+            for (int[] kept : paretoSet) {
+                if (Planner.dominanceCheck(kept, 0, label, 0)) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated) {
+                paretoSet.removeIf(kept -> Planner.dominanceCheck(label, 0, kept, 0));
+                paretoSet.add(label);
+            }
+        }
+        return paretoSet;
+    }
+
+    private TSet fillTSet() {
+        TSet set = new TSet();
+        for (int i = 0; i < numLabels; ++i) {
+            set.add(parameters[4 * i + 1], parameters[4 * i + 2], parameters[4 * i + 3]);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public int dominanceCheck() {
+        int count = 0;
+        for (int q = 0; q < numLabels; ++q) {
+            for (int i = 0; i < numLabels; ++i) {
+                if (Planner.dominanceCheck(parameters, 4 * i, queryParameters, 4 * q)) {
+                    count += 1;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int openFrontier() {
+        int count = 0;
+        for (int q = 0; q < numLabels; ++q) {
+            if (frontier.isDominated(queries[q], null)) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int tDiscards() {
+        int count = 0;
+        for (int q = 0; q < numLabels; ++q) {
+            int[] query = queries[q];
+            if (tSet.dominates(query[1], query[2], query[3])) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public TSet updateTSet() {
+        return fillTSet();
+    }
+
+    @Benchmark
+    public int[] linkPaths() {
+        for (int q = 0; q < numLabels; ++q) {
+            int offset = 4 * q;
+            Planner.linkPaths(queries[q], parameters[offset], parameters[offset + 1], parameters[offset + 2],
+                    parameters[offset + 3], linked);
+        }
+        return linked;
+    }
+}
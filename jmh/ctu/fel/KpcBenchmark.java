@@ -0,0 +1,45 @@
+package ctu.fel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of the kPC cover, a single construction per measurement as it takes seconds
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xss64m"})
+public class KpcBenchmark {
+    @Param("bayern.graph")
+    public String graphPath;
+
+    @Param({"4", "8", "16", "32"})
+    public int k;
+
+    private Graph graph;
+
+    @Setup
+    public void setUp() throws IOException {
+        graph = BenchmarkData.loadGraph(graphPath);
+    }
+
+    @Benchmark
+    public KPC construct() {
+        return new KPC(graph, k, Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,114 @@
+package ctu.fel;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-to-point tKpcMls queries without pruning, with ellipse pruning and with landmark pruning, one operation
+ * runs all queries. Ellipse pruning is heuristic, so the size of the Pareto set of the target is counted as well,
+ * target pruning keeps it complete. The counters are totals of an iteration, divided by the queries they give
+ * the settled labels and the target Pareto set size of a query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xss64m"})
+public class LandmarkBenchmark {
+    @Param("bayern.graph")
+    public String graphPath;
+
+    @Param("32")
+    public int k;
+
+    @Param("16")
+    public int numLandmarks;
+
+    @Param("20")
+    public int numQueries;
+
+    @Param("42")
+    public long seed;
+
+    @Param({"none", "ellipse", "landmarks"})
+    public String pruning;
+
+    private Graph graph;
+    private KPC kpc;
+    private int[] sources;
+    private int[] targets;
+    private Planner[] planners;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long queries;
+        public long settledLabels;
+        public long targetLabels;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            queries = 0;
+            settledLabels = 0;
+            targetLabels = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        graph = BenchmarkData.loadGraph(graphPath);
+        kpc = BenchmarkData.loadCover(graph, graphPath, k);
+        Landmarks landmarks = pruning.equals("landmarks") ?
+                BenchmarkData.loadLandmarks(graph, graphPath, numLandmarks) : null;
+
+        Random random = new Random(seed);
+        List<Integer> goals = graph.getGoals();
+        sources = new int[numQueries];
+        targets = new int[numQueries];
+        planners = new Planner[numQueries];
+        for (int q = 0; q < numQueries; ++q) {
+            sources[q] = random.nextInt(graph.getNumNodes());
+            targets[q] = goals.get(random.nextInt(goals.size()));
+
+            // Bounds towards the target are computed here, so that the operation times the searches only
+            Planner planner = new Planner();
+            planner.setEllipseGoal(graph, targets[q]);
+            if (pruning.equals("ellipse")) {
+                planner.setEllipseUsage(true);
+            }
+            else if (landmarks != null) {
+                planner.setLandmarkPruning(landmarks, true);
+            }
+            planners[q] = planner;
+        }
+    }
+
+    @Benchmark
+    public void tKpcMls(Counters counters) {
+        for (int q = 0; q < numQueries; ++q) {
+            SearchStats stats = new SearchStats();
+            Map<Integer, Set<Label>> paretoSets = planners[q].tKpcMls(graph, kpc, sources[q], stats);
+            counters.queries += 1;
+            counters.settledLabels += stats.getNumSettled();
+            counters.targetLabels += paretoSets.get(targets[q]).size();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ctu.fel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One-to-all queries of the four search variants from a fixed set of sources, one operation runs all sources
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xss64m"})
+public class SearchBenchmark {
+    @Param("bayern.graph")
+    public String graphPath;
+
+    @Param("32")
+    public int k;
+
+    @Param("4")
+    public int numSources;
+
+    @Param("42")
+    public long seed;
+
+    private Graph graph;
+    private KPC kpc;
+    private Planner planner;
+    private int[] sources;
+
+    @Setup
+    public void setUp() throws IOException {
+        graph = BenchmarkData.loadGraph(graphPath);
+        kpc = BenchmarkData.loadCover(graph, graphPath, k);
+        planner = new Planner();
+        planner.setVerbose(false);
+        sources = BenchmarkData.getSources(graph, numSources, seed);
+    }
+
+    @Benchmark
+    public void mls(Blackhole blackhole) {
+        for (int source : sources) {
+            blackhole.consume(planner.mls(graph, source));
+        }
+    }
+
+    @Benchmark
+    public void tMls(Blackhole blackhole) {
+        for (int source : sources) {
+            blackhole.consume(planner.tMls(graph, source));
+        }
+    }
+
+    @Benchmark
+    public void kpcMls(Blackhole blackhole) {
+        for (int source : sources) {
+            blackhole.consume(planner.kpcMls(graph, kpc, source));
+        }
+    }
+
+    @Benchmark
+    public void tKpcMls(Blackhole blackhole) {
+        for (int source : sources) {
+            blackhole.consume(planner.tKpcMls(graph, kpc, source));
+        }
+    }
+}
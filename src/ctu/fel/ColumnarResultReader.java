@@ -0,0 +1,138 @@
+package ctu.fel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a result file written by ColumnarResultSink. The file is memory-mapped and the labels of a goal are
+ * decoded on demand, so a single goal is read without decoding the others.
+ */
+class ColumnarResultReader {
+    private final int numGoals;
+    private final int numLabels;
+    private final IntBuffer goals;
+    private final IntBuffer labelOffsets;
+    private final IntBuffer[] byteOffsets = new IntBuffer[ColumnarResultSink.NUM_COLUMNS];
+    private final ByteBuffer[] pools = new ByteBuffer[ColumnarResultSink.NUM_COLUMNS];
+
+    /**
+     * @param path  path to the result file
+     * @throws IOException  if the file cannot be read or is not a result file
+     */
+    ColumnarResultReader(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    ColumnarResultSink.RESULT_FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != ColumnarResultSink.RESULT_FILE_MAGIC) {
+                throw new IOException(path + " is not a result file");
+            }
+            if (header.getInt(4) != ColumnarResultSink.RESULT_FILE_VERSION) {
+                throw new IOException("Unsupported result file version " + header.getInt(4));
+            }
+            numGoals = header.getInt(8);
+            numLabels = header.getInt(12);
+            int[] poolSizes = new int[ColumnarResultSink.NUM_COLUMNS];
+            long expectedSize = ColumnarResultSink.RESULT_FILE_HEADER_BYTES + 4L * numGoals +
+                    4L * (ColumnarResultSink.NUM_COLUMNS + 1) * (numGoals + 1);
+            for (int c = 0; c < ColumnarResultSink.NUM_COLUMNS; ++c) {
+                poolSizes[c] = header.getInt(16 + 4 * c);
+                expectedSize += ColumnarResultSink.paddedBytes(poolSizes[c]);
+            }
+            if (channel.size() != expectedSize) {
+                throw new IOException("Result file " + path + " has size " + channel.size() + ", expected " +
+                        expectedSize);
+            }
+
+            long position = ColumnarResultSink.RESULT_FILE_HEADER_BYTES;
+            goals = mapSection(channel, position, numGoals);
+            position += 4L * numGoals;
+            labelOffsets = mapSection(channel, position, numGoals + 1);
+            position += 4L * (numGoals + 1);
+            for (int c = 0; c < ColumnarResultSink.NUM_COLUMNS; ++c) {
+                byteOffsets[c] = mapSection(channel, position, numGoals + 1);
+                position += 4L * (numGoals + 1);
+            }
+            for (int c = 0; c < ColumnarResultSink.NUM_COLUMNS; ++c) {
+                pools[c] = channel.map(FileChannel.MapMode.READ_ONLY, position, poolSizes[c]);
+                position += ColumnarResultSink.paddedBytes(poolSizes[c]);
+            }
+        }
+    }
+
+    int getNumGoals() {
+        return numGoals;
+    }
+
+    int getNumLabels() {
+        return numLabels;
+    }
+
+    /**
+     * @param goalIndex index of the goal in [0, getNumGoals()), goals are stored in increasing node order
+     * @return  the node id of the goal
+     */
+    int getGoal(int goalIndex) {
+        return goals.get(goalIndex);
+    }
+
+    /**
+     * @param goalIndex index of the goal
+     * @return  number of labels of the goal
+     */
+    int getParetoSetSize(int goalIndex) {
+        return labelOffsets.get(goalIndex + 1) - labelOffsets.get(goalIndex);
+    }
+
+    /**
+     * Decodes a column of a goal
+     * @param goalIndex index of the goal
+     * @param column    0 time, 1 minSoCBefore, 2 consumption, 3 maxSoCAfter
+     * @return  the values of the labels of the goal in lexicographic order
+     */
+    int[] getColumn(int goalIndex, int column) {
+        int[] values = new int[getParetoSetSize(goalIndex)];
+        ByteBuffer pool = pools[column];
+        int position = byteOffsets[column].get(goalIndex);
+        int value = 0;
+        for (int i = 0; i < values.length; ++i) {
+            int zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = pool.get(position++);
+                zigzag |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            value += (zigzag >>> 1) ^ -(zigzag & 1);
+            values[i] = value;
+        }
+        return values;
+    }
+
+    /**
+     * @param goalIndex index of the goal
+     * @return  the labels of the goal in lexicographic order
+     */
+    Label[] getParetoSet(int goalIndex) {
+        int[][] values = new int[ColumnarResultSink.NUM_COLUMNS][];
+        for (int c = 0; c < ColumnarResultSink.NUM_COLUMNS; ++c) {
+            values[c] = getColumn(goalIndex, c);
+        }
+        Label[] labels = new Label[values[0].length];
+        for (int i = 0; i < labels.length; ++i) {
+            labels[i] = new Label(getGoal(goalIndex), new int[]{values[0][i], values[1][i], values[2][i],
+                    values[3][i]});
+        }
+        return labels;
+    }
+
+    private static IntBuffer mapSection(FileChannel channel, long position, int numValues) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * numValues).order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+    }
+}
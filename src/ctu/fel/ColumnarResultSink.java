@@ -0,0 +1,199 @@
+package ctu.fel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the labels in a binary columnar format read by ColumnarResultReader. The labels are collected in
+ * primitive lists and written when the sink is closed, grouped by goal in increasing node order and sorted
+ * lexicographically within a goal. Every path parameter is a column of zigzag varint deltas to the previous label
+ * of the same goal, the first label of a goal is encoded relative to 0, so the goals are decoded independently.
+ * Sorted by time, the time deltas are small and not negative and the state of charge parameters change little
+ * between neighboring labels of a Pareto set.
+ */
+class ColumnarResultSink implements ResultSink {
+    /**
+     * Result file layout (little endian): a header of RESULT_FILE_HEADER_BYTES bytes
+     * "magic, version, numGoals, numLabels, byte sizes of the four columns", followed by the sections
+     * goal node ids (numGoals), label offsets of the goals (numGoals + 1), for each column the byte offsets of
+     * the goals (numGoals + 1) and then the four column pools, each padded to a multiple of 4.
+     * The columns are time, minSoCBefore, consumption and maxSoCAfter.
+     */
+    static final int RESULT_FILE_MAGIC = 0x53455250;
+    static final int RESULT_FILE_VERSION = 1;
+    static final int RESULT_FILE_HEADER_BYTES = 32;
+    static final int NUM_COLUMNS = 4;
+
+    private final String path;
+    // Slot of a goal in the row lists
+    private final Map<Integer, Integer> goalSlots = new HashMap<>();
+    private IntList[] goalRows = new IntList[16];
+    private final IntList[] columns = new IntList[NUM_COLUMNS];
+    private boolean closed;
+
+    /**
+     * @param path  path of the file to be created when the sink is closed
+     */
+    ColumnarResultSink(String path) {
+        this.path = path;
+        for (int c = 0; c < NUM_COLUMNS; ++c) {
+            columns[c] = new IntList();
+        }
+    }
+
+    @Override
+    public void write(Label label) {
+        if (closed) {
+            throw new IllegalStateException("Sink is closed");
+        }
+        Integer slot = goalSlots.get(label.getNode());
+        if (slot == null) {
+            slot = goalSlots.size();
+            goalSlots.put(label.getNode(), slot);
+            if (slot == goalRows.length) {
+                goalRows = Arrays.copyOf(goalRows, 2 * slot);
+            }
+            goalRows[slot] = new IntList(4);
+        }
+        goalRows[slot].add(columns[0].size());
+        for (int c = 0; c < NUM_COLUMNS; ++c) {
+            columns[c].add(label.getParameters()[c]);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        int numGoals = goalSlots.size();
+        int[] goals = new int[numGoals];
+        int g = 0;
+        for (int goal : goalSlots.keySet()) {
+            goals[g++] = goal;
+        }
+        Arrays.sort(goals);
+
+        int numLabels = columns[0].size();
+        int[] labelOffsets = new int[numGoals + 1];
+        int[][] byteOffsets = new int[NUM_COLUMNS][numGoals + 1];
+        ByteList[] pools = new ByteList[NUM_COLUMNS];
+        for (int c = 0; c < NUM_COLUMNS; ++c) {
+            pools[c] = new ByteList();
+        }
+        for (g = 0; g < numGoals; ++g) {
+            int[] rows = sortRows(goalRows[goalSlots.get(goals[g])]);
+            labelOffsets[g + 1] = labelOffsets[g] + rows.length;
+            for (int c = 0; c < NUM_COLUMNS; ++c) {
+                int previous = 0;
+                for (int row : rows) {
+                    int value = columns[c].get(row);
+                    pools[c].addVarint(value - previous);
+                    previous = value;
+                }
+                byteOffsets[c][g + 1] = pools[c].size;
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(RESULT_FILE_MAGIC).putInt(RESULT_FILE_VERSION).putInt(numGoals).putInt(numLabels);
+            for (int c = 0; c < NUM_COLUMNS; ++c) {
+                buffer.putInt(pools[c].size);
+            }
+
+            writeSection(channel, buffer, goals);
+            writeSection(channel, buffer, labelOffsets);
+            for (int c = 0; c < NUM_COLUMNS; ++c) {
+                writeSection(channel, buffer, byteOffsets[c]);
+            }
+            for (int c = 0; c < NUM_COLUMNS; ++c) {
+                for (long b = 0; b < paddedBytes(pools[c].size); ++b) {
+                    if (!buffer.hasRemaining()) {
+                        flush(channel, buffer);
+                    }
+                    buffer.put(b < pools[c].size ? pools[c].values[(int) b] : 0);
+                }
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * @return  the rows in the lexicographic order of their labels
+     */
+    private int[] sortRows(IntList rows) {
+        int[] sorted = new int[rows.size()];
+        for (int i = 0; i < sorted.length; ++i) {
+            sorted[i] = rows.get(i);
+        }
+
+        // Stable passes from the last column to the first, a key holds the value of the column in the high half,
+        // inverted for a maximized column, and the position after the previous pass in the low half
+        long[] keys = new long[sorted.length];
+        int[] previous = new int[sorted.length];
+        for (int c = NUM_COLUMNS - 1; c >= 0; --c) {
+            for (int i = 0; i < sorted.length; ++i) {
+                int value = columns[c].get(sorted[i]);
+                keys[i] = (long) (Planner.getMaximize(c) ? ~value : value) << 32 | i;
+            }
+            Arrays.sort(keys);
+            System.arraycopy(sorted, 0, previous, 0, sorted.length);
+            for (int i = 0; i < sorted.length; ++i) {
+                sorted[i] = previous[(int) keys[i]];
+            }
+        }
+        return sorted;
+    }
+
+    static long paddedBytes(int numBytes) {
+        return (numBytes + 3) & ~3L;
+    }
+
+    private static void writeSection(FileChannel channel, ByteBuffer buffer, int[] section) throws IOException {
+        for (int value : section) {
+            if (buffer.remaining() < 4) {
+                flush(channel, buffer);
+            }
+            buffer.putInt(value);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Growable byte array of zigzag varints
+     */
+    private static class ByteList {
+        private byte[] values = new byte[64];
+        private int size;
+
+        void addVarint(int value) {
+            if (size + 5 > values.length) {
+                values = Arrays.copyOf(values, 2 * values.length + 5);
+            }
+            int zigzag = (value << 1) ^ (value >> 31);
+            while ((zigzag & ~0x7F) != 0) {
+                values[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            values[size++] = (byte) zigzag;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ctu.fel;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning the search connecting the source of a kPC query to the cover
+ */
+@Name("ctu.fel.ConnectSource")
+@jdk.jfr.Label("Connect Source to Cover")
+@Category("Routing")
+@Description("Search from the source of a kPC query to the first cover nodes")
+class ConnectSourceEvent extends Event {
+    @jdk.jfr.Label("Source")
+    int source;
+
+    @jdk.jfr.Label("Source in Cover")
+    boolean sourceInCover;
+
+    @jdk.jfr.Label("Reached Cover Nodes")
+    int numReachedCoverNodes;
+
+    @jdk.jfr.Label("Settled Labels")
+    long numSettled;
+}
@@ -1,32 +1,27 @@
 package ctu.fel;
 
-import java.util.*;
-
 public class CoverEdge extends Path{
-    private final Deque<Integer> nodeSequence;
+    private final int[] nodeSequence;
     private final int[] parameters;
 
-    public CoverEdge(int n){
-        nodeSequence = new LinkedList<>();
-        nodeSequence.addLast(n);
-        parameters = Planner.getInitialPathParameters();
-    }
-
-    public CoverEdge(Deque<Integer> nodeSequence, int[] parameters) {
+    public CoverEdge(int[] nodeSequence, int[] parameters) {
         this.nodeSequence = nodeSequence;
         this.parameters = parameters;
     }
 
     public int getStartPoint() {
-        return nodeSequence.getFirst();
+        return nodeSequence[0];
     }
 
     public int getEndPoint() {
-        return nodeSequence.getLast();
+        return nodeSequence[nodeSequence.length - 1];
     }
 
-    public Deque<Integer> getNodeSequence() {
-        return (Deque<Integer>) ((LinkedList<Integer>)nodeSequence).clone();
+    /**
+     * @return  the node sequence of the cover edge, the array is shared with this object
+     */
+    public int[] getNodeSequence() {
+        return nodeSequence;
     }
 
     public int getTime() {
@@ -0,0 +1,323 @@
+package ctu.fel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel reader of numeric CSV files. The file is split into line-aligned byte ranges which are memory-mapped
+ * and parsed concurrently straight from bytes, without creating a String per line or field.
+ * Every range is read twice, first to count its rows and then to parse them into the column arrays at
+ * the offset given by the row counts of the preceding ranges, so the row order of the file is kept.
+ */
+class CsvReader {
+    private static final int CHUNK_SIZE = 8 << 20;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Parsed columns of a CSV file
+     */
+    static class Columns {
+        private final int numRows;
+        private final Object[] columns;
+        private final long parseNanos;
+
+        private Columns(int numRows, Object[] columns, long parseNanos) {
+            this.numRows = numRows;
+            this.columns = columns;
+            this.parseNanos = parseNanos;
+        }
+
+        int getNumRows() {
+            return numRows;
+        }
+
+        /**
+         * @return  duration of reading the file [ns]
+         */
+        long getParseNanos() {
+            return parseNanos;
+        }
+
+        int[] getInts(int column) {
+            return (int[]) columns[column];
+        }
+
+        float[] getFloats(int column) {
+            return (float[]) columns[column];
+        }
+    }
+
+    /**
+     * Reads the leading columns of a CSV file, further columns of a row are skipped
+     * @param path  path to the file
+     * @param hasHeader true if the first line is a header to be skipped
+     * @param types one character per column, 'i' for an int column and 'f' for a float column
+     * @return  parsed columns
+     * @throws IOException  if the file cannot be read
+     * @throws NumberFormatException    if a row is malformed
+     */
+    static Columns readColumns(String path, boolean hasHeader, String types) throws IOException {
+        long startTime = System.nanoTime();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = hasHeader ? nextLineStart(channel, 0) : 0;
+
+            // Line-aligned chunk boundaries
+            List<Long> boundaries = new ArrayList<>();
+            boundaries.add(dataStart);
+            long boundary = dataStart;
+            while (boundary + CHUNK_SIZE < size) {
+                boundary = nextLineStart(channel, boundary + CHUNK_SIZE);
+                boundaries.add(boundary);
+            }
+            if (boundary < size) {
+                boundaries.add(size);
+            }
+            int numChunks = boundaries.size() - 1;
+
+            MappedByteBuffer[] chunks = new MappedByteBuffer[numChunks];
+            for (int c = 0; c < numChunks; ++c) {
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, boundaries.get(c),
+                        boundaries.get(c + 1) - boundaries.get(c));
+            }
+
+            // Count rows of every chunk and turn the counts into row offsets
+            int[] rowOffsets = new int[numChunks + 1];
+            IntStream.range(0, numChunks).parallel().forEach(c -> rowOffsets[c + 1] = countRows(chunks[c]));
+            for (int c = 0; c < numChunks; ++c) {
+                rowOffsets[c + 1] += rowOffsets[c];
+            }
+            int numRows = rowOffsets[numChunks];
+
+            Object[] columns = new Object[types.length()];
+            for (int col = 0; col < columns.length; ++col) {
+                if (types.charAt(col) == 'f') {
+                    columns[col] = new float[numRows];
+                }
+                else {
+                    columns[col] = new int[numRows];
+                }
+            }
+
+            IntStream.range(0, numChunks).parallel().forEach(c -> parseRows(chunks[c], types, columns, rowOffsets[c]));
+
+            return new Columns(numRows, columns, System.nanoTime() - startTime);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Finds the start of the line following the given position
+     * @param channel   file to be searched
+     * @param position  position to start the search from
+     * @return  position after the next line break, or the file size if there is none
+     */
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; ++i) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Counts non-empty lines of a chunk
+     */
+    private static int countRows(ByteBuffer chunk) {
+        int rows = 0;
+        boolean lineHasContent = false;
+        int limit = chunk.limit();
+        for (int i = 0; i < limit; ++i) {
+            byte b = chunk.get(i);
+            if (b == '\n') {
+                if (lineHasContent) {
+                    rows += 1;
+                }
+                lineHasContent = false;
+            }
+            else if (b != '\r') {
+                lineHasContent = true;
+            }
+        }
+        if (lineHasContent) {
+            rows += 1;
+        }
+        return rows;
+    }
+
+    /**
+     * Parses all rows of a chunk into the column arrays
+     * @param chunk chunk of whole lines
+     * @param types column types
+     * @param columns   column arrays to be filled
+     * @param firstRow  row index of the first row of the chunk
+     */
+    private static void parseRows(ByteBuffer chunk, String types, Object[] columns, int firstRow) {
+        int row = firstRow;
+        int position = 0;
+        int limit = chunk.limit();
+        while (position < limit) {
+            // Skip empty lines
+            byte b = chunk.get(position);
+            if (b == '\n' || b == '\r') {
+                position += 1;
+                continue;
+            }
+
+            for (int col = 0; col < columns.length; ++col) {
+                int fieldEnd = position;
+                while (fieldEnd < limit && chunk.get(fieldEnd) != ',' && chunk.get(fieldEnd) != '\n' &&
+                        chunk.get(fieldEnd) != '\r') {
+                    fieldEnd += 1;
+                }
+                if (types.charAt(col) == 'f') {
+                    ((float[]) columns[col])[row] = parseFloat(chunk, position, fieldEnd);
+                }
+                else {
+                    ((int[]) columns[col])[row] = parseInt(chunk, position, fieldEnd);
+                }
+
+                if (col + 1 < columns.length) {
+                    if (fieldEnd >= limit || chunk.get(fieldEnd) != ',') {
+                        throw new NumberFormatException("Row " + row + " has only " + (col + 1) + " columns");
+                    }
+                    position = fieldEnd + 1;
+                }
+                else {
+                    position = fieldEnd;
+                }
+            }
+
+            // Skip the remaining columns
+            while (position < limit && chunk.get(position) != '\n') {
+                position += 1;
+            }
+            row += 1;
+        }
+    }
+
+    private static int parseInt(ByteBuffer chunk, int start, int end) {
+        int position = start;
+        boolean negative = false;
+        if (position < end && (chunk.get(position) == '-' || chunk.get(position) == '+')) {
+            negative = chunk.get(position) == '-';
+            position += 1;
+        }
+        if (position == end) {
+            throw new NumberFormatException("Empty integer field");
+        }
+
+        // Accumulate negatively so that Integer.MIN_VALUE is representable
+        int value = 0;
+        for (; position < end; ++position) {
+            int digit = chunk.get(position) - '0';
+            if (digit < 0 || digit > 9 || value < (Integer.MIN_VALUE + digit) / 10) {
+                throw new NumberFormatException("For input string: \"" + fieldToString(chunk, start, end) + "\"");
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            if (value == Integer.MIN_VALUE) {
+                throw new NumberFormatException("For input string: \"" + fieldToString(chunk, start, end) + "\"");
+            }
+            return -value;
+        }
+        return value;
+    }
+
+    /**
+     * Parses a decimal float with the same result as Float.parseFloat. Up to 18 significant digits and decimal
+     * exponents within the exact powers of ten are converted by a single correctly rounded double operation.
+     * Rounding that double to float is exact unless it lies precisely halfway between two floats, which,
+     * like longer inputs, falls back to Float.parseFloat.
+     */
+    private static float parseFloat(ByteBuffer chunk, int start, int end) {
+        int position = start;
+        boolean negative = false;
+        if (position < end && (chunk.get(position) == '-' || chunk.get(position) == '+')) {
+            negative = chunk.get(position) == '-';
+            position += 1;
+        }
+
+        long mantissa = 0;
+        int numDigits = 0;
+        int exponent = 0;
+        boolean seenPoint = false;
+        boolean seenDigit = false;
+        for (; position < end; ++position) {
+            byte b = chunk.get(position);
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                if (numDigits < 18) {
+                    if (mantissa != 0 || b != '0') {
+                        numDigits += 1;
+                    }
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (seenPoint) {
+                        exponent -= 1;
+                    }
+                }
+                else if (!seenPoint) {
+                    exponent += 1;
+                }
+            }
+            else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            }
+            else if (b == 'e' || b == 'E') {
+                break;
+            }
+            else {
+                throw new NumberFormatException("For input string: \"" + fieldToString(chunk, start, end) + "\"");
+            }
+        }
+        if (!seenDigit) {
+            throw new NumberFormatException("For input string: \"" + fieldToString(chunk, start, end) + "\"");
+        }
+        if (position < end) {
+            exponent += parseInt(chunk, position + 1, end);
+        }
+
+        if (mantissa >= (1L << 53) || exponent < -22 || exponent > 22) {
+            return Float.parseFloat(fieldToString(chunk, start, end));
+        }
+
+        double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        if ((Double.doubleToRawLongBits(value) & 0x1FFFFFFFL) == 0x10000000L) {
+            return Float.parseFloat(fieldToString(chunk, start, end));
+        }
+        return (float) (negative ? -value : value);
+    }
+
+    private static String fieldToString(ByteBuffer chunk, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; ++i) {
+            bytes[i - start] = chunk.get(i);
+        }
+        return new String(bytes);
+    }
+}
@@ -0,0 +1,39 @@
+package ctu.fel;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Writes the labels as CSV lines "consumption,minSocAfter,minSocBefore,nodeId,time" through a buffered writer,
+ * every line is assembled in a reused builder
+ */
+class CsvResultSink implements ResultSink {
+    private final Writer writer;
+    private final StringBuilder line = new StringBuilder(64);
+
+    /**
+     * @param path  path of the file to be created
+     * @throws IOException  if the file cannot be created
+     */
+    CsvResultSink(String path) throws IOException {
+        writer = Files.newBufferedWriter(Paths.get(path), StandardCharsets.US_ASCII);
+        writer.write("consumption,minSocAfter,minSocBefore,nodeId,time\n");
+    }
+
+    @Override
+    public void write(Label label) throws IOException {
+        line.setLength(0);
+        line.append(label.getConsumption()).append(',').append(label.getMaxSoCAfter()).append(',')
+                .append(label.getMinSoCBefore()).append(',').append(label.getNode()).append(',')
+                .append(label.getTime()).append('\n');
+        writer.append(line);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
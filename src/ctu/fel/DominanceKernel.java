@@ -0,0 +1,62 @@
+package ctu.fel;
+
+/**
+ * Dominance tests of one candidate against a range of labels stored column-wise.
+ * Maximized criteria are stored bitwise inverted (~value, which reverses the order without overflow), so every
+ * criterion is tested by the same comparison. A stored label passes if all its columns are at most, or at least,
+ * the candidate bounds, which are the candidate parameters for standard dominance and integer bounds derived
+ * from the float comparisons for epsilon dominance.
+ * Labels are tested by a scalar loop, the search for a passing label stops at the first one.
+ */
+final class DominanceKernel {
+    private DominanceKernel() {
+    }
+
+    /**
+     * Finds a stored label with all columns at most the bounds
+     * @param c0    first column
+     * @param c1    second column
+     * @param c2    third column
+     * @param c3    fourth column
+     * @param from  first index of the range
+     * @param to    index past the range
+     * @param b0    bound of the first column
+     * @param b1    bound of the second column
+     * @param b2    bound of the third column
+     * @param b3    bound of the fourth column
+     * @return  the first index of such a label, -1 if there is none
+     */
+    static int firstAtMost(int[] c0, int[] c1, int[] c2, int[] c3, int from, int to, int b0, int b1, int b2, int b3) {
+        for (int i = from; i < to; ++i) {
+            if (c0[i] <= b0 && c1[i] <= b1 && c2[i] <= b2 && c3[i] <= b3) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Flags the stored labels with all columns at least the bounds
+     * @param c0    first column
+     * @param c1    second column
+     * @param c2    third column
+     * @param c3    fourth column
+     * @param from  first index of the range
+     * @param to    index past the range
+     * @param b0    bound of the first column
+     * @param b1    bound of the second column
+     * @param b2    bound of the third column
+     * @param b3    bound of the fourth column
+     * @param flags array receiving 1 at the index of every such label and 0 elsewhere in the range
+     * @return  the number of flagged labels
+     */
+    static int flagAtLeast(int[] c0, int[] c1, int[] c2, int[] c3, int from, int to, int b0, int b1, int b2, int b3,
+                           int[] flags) {
+        int count = 0;
+        for (int i = from; i < to; ++i) {
+            flags[i] = (c0[i] >= b0 && c1[i] >= b1 && c2[i] >= b2 && c3[i] >= b3) ? 1 : 0;
+            count += flags[i];
+        }
+        return count;
+    }
+}
@@ -0,0 +1,202 @@
+package ctu.fel;
+
+/**
+ * Physical lower bounds of the paths to a target from the node data only, without preprocessing. The consumption
+ * of an edge is at least potentialCoefficient * (elevation difference) + rollingCoefficient * (straight-line
+ * distance) and its time at least the straight-line distance over maxSpeed. Summed over a path the elevation
+ * differences telescope and the straight-line distances of the edges are not below the straight-line distance
+ * of the path ends, so the bounds of the edges give the bounds of any path to the target.
+ * The coefficients are verified against every edge of the graph when the bounds are created, coefficients
+ * exceeding the edge data are rejected, so the pruning keeps every Pareto optimal route.
+ */
+class ElevationBounds {
+    // Relative margin of the calibrated coefficients covering the rounding of the floating point arithmetic
+    private static final double CALIBRATION_MARGIN = 1e-6;
+
+    private final Graph graph;
+    private final double potentialCoefficient;
+    private final double rollingCoefficient;
+    private final double maxSpeed;
+    // False if no coefficients bound the consumption of the edges, the consumption is not bounded then
+    private final boolean boundsConsumption;
+
+    /**
+     * @param graph graph the bounds are used on
+     * @param potentialCoefficient  consumption per unit of elevation gain
+     * @param rollingCoefficient    consumption per unit of projected distance, not negative
+     * @param maxSpeed  projected distance per unit of time, not below the speed of any edge,
+     *                  Double.POSITIVE_INFINITY for no time bound
+     * @throws IllegalArgumentException if the bounds of an edge exceed its time or consumption
+     */
+    ElevationBounds(Graph graph, double potentialCoefficient, double rollingCoefficient, double maxSpeed) {
+        this(graph, potentialCoefficient, rollingCoefficient, maxSpeed, true);
+        String violation = verify();
+        if (violation != null) {
+            throw new IllegalArgumentException("Elevation bounds are not admissible -- " + violation);
+        }
+    }
+
+    private ElevationBounds(Graph graph, double potentialCoefficient, double rollingCoefficient, double maxSpeed,
+                            boolean boundsConsumption) {
+        if (rollingCoefficient < 0 || !(maxSpeed > 0)) {
+            throw new IllegalArgumentException("Invalid rolling coefficient " + rollingCoefficient +
+                    " or maximal speed " + maxSpeed);
+        }
+        this.graph = graph;
+        this.potentialCoefficient = potentialCoefficient;
+        this.rollingCoefficient = rollingCoefficient;
+        this.maxSpeed = maxSpeed;
+        this.boundsConsumption = boundsConsumption;
+    }
+
+    /**
+     * Derives the tightest coefficients the edges of the graph admit. The potential coefficient is the maximal one
+     * not above the consumption per elevation gain of the ascending edges and not below the consumption per
+     * elevation loss of the descending ones, the rolling coefficient the maximal one for the remaining consumption
+     * per distance, and the maximal speed the maximal edge speed. If the ascending and the descending edges admit
+     * no common potential coefficient, or a level edge has a negative consumption, the consumption is not bounded.
+     * @param graph graph to calibrate the bounds on
+     * @return  the bounds with the calibrated coefficients
+     */
+    static ElevationBounds calibrate(Graph graph) {
+        double minPotential = Double.NEGATIVE_INFINITY;
+        double maxPotential = Double.POSITIVE_INFINITY;
+        boolean levelEdgesBounded = true;
+        double maxSpeed = 0;
+        for (int node = 0; node < graph.getNumNodes(); ++node) {
+            int end = graph.getOutgoingEnd(node);
+            for (int e = graph.getOutgoingBegin(node); e < end; ++e) {
+                int target = graph.getOutgoingTarget(e);
+                int elevationGain = graph.getElevation(target) - graph.getElevation(node);
+                double consumption = graph.getOutgoingConsumption(e);
+                if (elevationGain > 0) {
+                    maxPotential = Math.min(maxPotential, consumption / elevationGain);
+                }
+                else if (elevationGain < 0) {
+                    minPotential = Math.max(minPotential, consumption / elevationGain);
+                }
+                else if (consumption < 0) {
+                    levelEdgesBounded = false;
+                }
+
+                double distance = getDistance(graph, node, target);
+                int time = graph.getOutgoingTime(e);
+                if (distance > 0) {
+                    maxSpeed = time > 0 ? Math.max(maxSpeed, distance / time) : Double.POSITIVE_INFINITY;
+                }
+            }
+        }
+        maxSpeed = maxSpeed == 0 ? Double.POSITIVE_INFINITY : maxSpeed * (1 + CALIBRATION_MARGIN);
+
+        if (minPotential > maxPotential || !levelEdgesBounded) {
+            return new ElevationBounds(graph, 0, 0, maxSpeed, false);
+        }
+        double potentialCoefficient = Double.isInfinite(maxPotential) ? Math.max(0, minPotential) : maxPotential;
+        // Shrink towards the admissible interval so that rounding does not overshoot an edge
+        potentialCoefficient -= Math.abs(potentialCoefficient) * CALIBRATION_MARGIN;
+        if (potentialCoefficient < minPotential) {
+            potentialCoefficient = minPotential + Math.abs(minPotential) * CALIBRATION_MARGIN;
+        }
+
+        double rollingCoefficient = Double.POSITIVE_INFINITY;
+        for (int node = 0; node < graph.getNumNodes(); ++node) {
+            int end = graph.getOutgoingEnd(node);
+            for (int e = graph.getOutgoingBegin(node); e < end; ++e) {
+                int target = graph.getOutgoingTarget(e);
+                double distance = getDistance(graph, node, target);
+                if (distance > 0) {
+                    double remaining = graph.getOutgoingConsumption(e) - potentialCoefficient *
+                            (graph.getElevation(target) - graph.getElevation(node));
+                    rollingCoefficient = Math.min(rollingCoefficient, remaining / distance);
+                }
+            }
+        }
+        rollingCoefficient = Double.isInfinite(rollingCoefficient) ? 0 :
+                Math.max(0, rollingCoefficient * (1 - CALIBRATION_MARGIN));
+
+        ElevationBounds bounds = new ElevationBounds(graph, potentialCoefficient, rollingCoefficient, maxSpeed,
+                true);
+        if (bounds.verify() != null) {
+            return new ElevationBounds(graph, 0, 0, maxSpeed, false);
+        }
+        return bounds;
+    }
+
+    /**
+     * Checks that the bounds of every edge are not above its time and consumption
+     * @return  description of the first violating edge, null if there is none
+     */
+    String verify() {
+        for (int node = 0; node < graph.getNumNodes(); ++node) {
+            int end = graph.getOutgoingEnd(node);
+            for (int e = graph.getOutgoingBegin(node); e < end; ++e) {
+                int target = graph.getOutgoingTarget(e);
+                double distance = getDistance(graph, node, target);
+                if (distance / maxSpeed > graph.getOutgoingTime(e)) {
+                    return "time of edge " + node + " -> " + target + " is below " + distance / maxSpeed;
+                }
+                double consumptionBound = getConsumptionBound(node, target, distance);
+                if (boundsConsumption && consumptionBound > graph.getOutgoingConsumption(e)) {
+                    return "consumption of edge " + node + " -> " + target + " is below " + consumptionBound;
+                }
+            }
+        }
+        return null;
+    }
+
+    double getPotentialCoefficient() {
+        return potentialCoefficient;
+    }
+
+    double getRollingCoefficient() {
+        return rollingCoefficient;
+    }
+
+    double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    boolean boundsConsumption() {
+        return boundsConsumption;
+    }
+
+    /**
+     * @param target    the node id of the target
+     * @return  bounds of the paths to the target for target pruning
+     */
+    TargetBounds getBounds(int target) {
+        return new TargetBounds() {
+            @Override
+            int getTarget() {
+                return target;
+            }
+
+            @Override
+            int getTimeBound(int node) {
+                // Floor and one less, the bounds of a path are sums of the bounds of its edges up to rounding
+                return Math.max(0, (int) Math.floor(getDistance(graph, node, target) / maxSpeed) - 1);
+            }
+
+            @Override
+            int getConsumptionBound(int node) {
+                if (!boundsConsumption) {
+                    return Integer.MIN_VALUE;
+                }
+                double bound = Math.floor(ElevationBounds.this.getConsumptionBound(node, target,
+                        getDistance(graph, node, target))) - 1;
+                return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, bound));
+            }
+        };
+    }
+
+    private double getConsumptionBound(int from, int to, double distance) {
+        return potentialCoefficient * (graph.getElevation(to) - graph.getElevation(from)) +
+                rollingCoefficient * distance;
+    }
+
+    private static double getDistance(Graph graph, int from, int to) {
+        double latitudeDifference = graph.getLatitudeProjected(to) - graph.getLatitudeProjected(from);
+        double longitudeDifference = graph.getLongitudeProjected(to) - graph.getLongitudeProjected(from);
+        return Math.sqrt(latitudeDifference * latitudeDifference + longitudeDifference * longitudeDifference);
+    }
+}
@@ -0,0 +1,329 @@
+package ctu.fel;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Re-runnable check of the search structures against the straightforward implementations they replaced.
+ * Graphs are generated with every node a goal, so the listener of a search sees every settled label. The settle
+ * order and the Pareto sets of mls and tMls are compared with a reference MLS keeping its queue in a TreeSet
+ * of labels and scanning the open and closed labels of a node linearly, which checks LabelQueue, OpenFrontier
+ * and TSet within the searches, and tKpcMls is compared with kpcMls the same way.
+ * TSet and OpenFrontier are also compared with linear scans on random vectors with many ties, with standard
+ * and epsilon dominance, and LabelQueue with a TreeSet on random labels sharing parameters across nodes.
+ * Usage: EquivalenceCheck [numNodes] [numGraphs] [seed], a mismatch ends the check with an IllegalStateException
+ */
+public class EquivalenceCheck {
+    private static final int NUM_SOURCES = 3;
+    private static final int NUM_RANDOM_VECTORS = 2000;
+    private static final float[] EPSILONS = {0.9f, 0.95f, 0.9f, 0.95f};
+
+    public static void main(String[] args) throws Exception {
+        int numNodes = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int numGraphs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        Random random = new Random(seed);
+        for (int g = 0; g < numGraphs; ++g) {
+            checkTSet(random, null);
+            checkTSet(random, EPSILONS);
+            checkOpenFrontier(random, null);
+            checkOpenFrontier(random, EPSILONS);
+            checkLabelQueue(random);
+
+            Graph graph = generateGraph(numNodes, seed + g);
+            KPC kpc = new KPC(graph, 8);
+            long numSettled = 0;
+            for (int s = 0; s < NUM_SOURCES; ++s) {
+                int source = random.nextInt(graph.getNumNodes());
+                List<int[]> reference = referenceMls(graph, source);
+                Planner planner = new Planner();
+                checkSearch("mls", source, reference, settleOrder(listener -> planner.mls(graph, source, listener)),
+                        planner.mls(graph, source));
+                checkSearch("tMls", source, reference, settleOrder(listener -> planner.tMls(graph, source, listener)),
+                        planner.tMls(graph, source));
+
+                List<int[]> kpcReference = settleOrder(listener -> planner.kpcMls(graph, kpc, source, listener));
+                checkSearch("tKpcMls", source, kpcReference,
+                        settleOrder(listener -> planner.tKpcMls(graph, kpc, source, listener)),
+                        planner.tKpcMls(graph, kpc, source));
+                numSettled += reference.size() + kpcReference.size();
+            }
+            System.out.println("Graph " + g + " -- " + numSettled + " settled labels equal to the reference");
+        }
+        System.out.println("Equivalence check passed");
+    }
+
+    private interface Search {
+        void run(LabelListener listener);
+    }
+
+    private static Graph generateGraph(int numNodes, long seed) throws Exception {
+        File file = File.createTempFile("equivalence", ".graph");
+        file.deleteOnExit();
+        GraphGenerator generator = new GraphGenerator(numNodes, seed);
+        generator.setNumGoals(numNodes);
+        generator.writeSnapshot(file.getPath());
+        return new Graph(file.getPath());
+    }
+
+    /**
+     * @return  the settled labels of a search in the order of settling, parameters followed by the node
+     */
+    private static List<int[]> settleOrder(Search search) {
+        List<int[]> settled = new ArrayList<>();
+        search.run(label -> {
+            int[] record = Arrays.copyOf(label.getParameters(), 5);
+            record[4] = label.getNode();
+            settled.add(record);
+        });
+        return settled;
+    }
+
+    /**
+     * Compares the settle order of a search and its Pareto sets with the settled labels of a reference run
+     */
+    private static void checkSearch(String variant, int source, List<int[]> reference, List<int[]> settled,
+                                     Map<Integer, Set<Label>> paretoSets) {
+        for (int i = 0; i < Math.max(reference.size(), settled.size()); ++i) {
+            if (i >= reference.size() || i >= settled.size() || !Arrays.equals(reference.get(i), settled.get(i))) {
+                throw new IllegalStateException(variant + " from " + source + " settles label " + i + " as " +
+                        (i < settled.size() ? Arrays.toString(settled.get(i)) : "none") + ", the reference as " +
+                        (i < reference.size() ? Arrays.toString(reference.get(i)) : "none"));
+            }
+        }
+
+        TreeSet<int[]> expected = new TreeSet<>(EquivalenceCheck::compare);
+        expected.addAll(reference);
+        TreeSet<int[]> returned = new TreeSet<>(EquivalenceCheck::compare);
+        int numReturned = 0;
+        for (Set<Label> paretoSet : paretoSets.values()) {
+            for (Label label : paretoSet) {
+                int[] record = Arrays.copyOf(label.getParameters(), 5);
+                record[4] = label.getNode();
+                returned.add(record);
+                numReturned += 1;
+            }
+        }
+        if (numReturned != returned.size() || !Arrays.deepEquals(expected.toArray(), returned.toArray())) {
+            throw new IllegalStateException(variant + " from " + source + " returns " + numReturned +
+                    " labels, the reference " + expected.size());
+        }
+    }
+
+    /**
+     * Lexicographic order of LabelArena.compare and of the labels of the former TreeSet queue
+     */
+    private static int compare(int[] a, int[] b) {
+        for (int p = 0; p < 4; ++p) {
+            if (a[p] != b[p]) {
+                return Planner.getMaximize(p) ? Integer.compare(b[p], a[p]) : Integer.compare(a[p], b[p]);
+            }
+        }
+        return Integer.compare(a[4], b[4]);
+    }
+
+    /**
+     * MLS on the graph with a TreeSet queue and linear scans of the open and closed labels of a node
+     * @return  the settled labels in the order of settling, parameters followed by the node
+     */
+    private static List<int[]> referenceMls(Graph graph, int source) {
+        int batteryCapacity = Planner.getBatteryCapacity();
+        List<List<int[]>> openLabels = new ArrayList<>();
+        List<List<int[]>> closedLabels = new ArrayList<>();
+        for (int node = 0; node < graph.getNumNodes(); ++node) {
+            openLabels.add(new ArrayList<>());
+            closedLabels.add(new ArrayList<>());
+        }
+        TreeSet<int[]> toExpand = new TreeSet<>(EquivalenceCheck::compare);
+        int[] sourceLabel = Arrays.copyOf(Planner.getInitialPathParameters(), 5);
+        sourceLabel[4] = source;
+        toExpand.add(sourceLabel);
+        openLabels.get(source).add(sourceLabel);
+
+        List<int[]> settled = new ArrayList<>();
+        while (!toExpand.isEmpty()) {
+            int[] label = toExpand.pollFirst();
+            openLabels.get(label[4]).remove(label);
+            closedLabels.get(label[4]).add(label);
+            settled.add(label);
+
+            for (int e = graph.getOutgoingBegin(label[4]); e < graph.getOutgoingEnd(label[4]); ++e) {
+                int consumption = graph.getOutgoingConsumption(e);
+                int[] newLabel = new int[5];
+                Planner.linkPaths(label, graph.getOutgoingTime(e), Math.max(0, consumption), consumption,
+                        Math.min(batteryCapacity, batteryCapacity - consumption), newLabel);
+                newLabel[4] = graph.getOutgoingTarget(e);
+                if (Planner.infeasiblePath(newLabel[1], newLabel[3]) ||
+                        isDominated(closedLabels.get(newLabel[4]), newLabel) ||
+                        isDominated(openLabels.get(newLabel[4]), newLabel)) {
+                    continue;
+                }
+                List<int[]> open = openLabels.get(newLabel[4]);
+                for (int i = open.size() - 1; i >= 0; --i) {
+                    if (Planner.dominanceCheck(newLabel, 0, open.get(i), 0)) {
+                        toExpand.remove(open.remove(i));
+                    }
+                }
+                open.add(newLabel);
+                toExpand.add(newLabel);
+            }
+        }
+        return settled;
+    }
+
+    private static boolean isDominated(List<int[]> labels, int[] parameters) {
+        for (int[] label : labels) {
+            if (Planner.dominanceCheck(label, 0, parameters, 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Dominance of the former pairwise checks, epsilon dominance if epsilons are given
+     */
+    private static boolean dominates(int[] p1, int[] p2, float[] epsilons) {
+        if (epsilons == null) {
+            return Planner.dominanceCheck(p1, 0, p2, 0);
+        }
+        for (int p = 0; p < 4; ++p) {
+            if (Planner.getMaximize(p) ? p1[p] < p2[p] * epsilons[p] : p1[p] * epsilons[p] > p2[p]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] randomVector(Random random) {
+        return new int[]{random.nextInt(50), random.nextInt(50), random.nextInt(50) - 25, random.nextInt(50)};
+    }
+
+    /**
+     * Compares TSet queries with a linear scan of the added vectors, time is not part of the vectors
+     */
+    private static void checkTSet(Random random, float[] epsilons) {
+        TSet tSet = new TSet();
+        List<int[]> added = new ArrayList<>();
+        for (int i = 0; i < NUM_RANDOM_VECTORS; ++i) {
+            int[] query = randomVector(random);
+            query[0] = 0;
+            boolean expected = false;
+            for (int[] vector : added) {
+                expected |= dominates(vector, query, epsilons);
+            }
+            boolean dominated = epsilons == null ? tSet.dominates(query[1], query[2], query[3]) :
+                    tSet.epsilonDominates(query[1], query[2], query[3], epsilons);
+            if (dominated != expected) {
+                throw new IllegalStateException("TSet answers " + dominated + " for " + Arrays.toString(query) +
+                        " after " + added.size() + " vectors");
+            }
+            if (random.nextBoolean()) {
+                tSet.add(query[1], query[2], query[3]);
+                added.add(query);
+            }
+        }
+    }
+
+    /**
+     * Runs the insertion of the searches on a frontier and on a list and compares the answers and the contents
+     */
+    private static void checkOpenFrontier(Random random, float[] epsilons) {
+        OpenFrontier frontier = new OpenFrontier();
+        List<int[]> open = new ArrayList<>();
+        IntList evicted = new IntList();
+        for (int label = 0; label < NUM_RANDOM_VECTORS; ++label) {
+            if (!open.isEmpty() && random.nextInt(4) == 0) {
+                int[] removed = open.remove(random.nextInt(open.size()));
+                if (!frontier.remove(removed[4], removed[0])) {
+                    throw new IllegalStateException("OpenFrontier misses label " + removed[4]);
+                }
+            }
+
+            int[] parameters = randomVector(random);
+            boolean expected = false;
+            for (int[] other : open) {
+                expected |= dominates(other, parameters, epsilons);
+            }
+            if (frontier.isDominated(parameters, epsilons) != expected) {
+                throw new IllegalStateException("OpenFrontier answers " + !expected + " for " +
+                        Arrays.toString(parameters));
+            }
+            if (expected) {
+                continue;
+            }
+
+            evicted.clear();
+            frontier.removeDominated(parameters, epsilons, evicted);
+            TreeSet<Integer> expectedEvicted = new TreeSet<>();
+            for (int i = open.size() - 1; i >= 0; --i) {
+                if (dominates(parameters, open.get(i), epsilons)) {
+                    expectedEvicted.add(open.remove(i)[4]);
+                }
+            }
+            TreeSet<Integer> actualEvicted = new TreeSet<>();
+            for (int i = 0; i < evicted.size(); ++i) {
+                actualEvicted.add(evicted.get(i));
+            }
+            if (!actualEvicted.equals(expectedEvicted) || evicted.size() != expectedEvicted.size()) {
+                throw new IllegalStateException("OpenFrontier evicts " + actualEvicted + " instead of " +
+                        expectedEvicted + " for " + Arrays.toString(parameters));
+            }
+            int[] record = Arrays.copyOf(parameters, 5);
+            record[4] = label;
+            frontier.add(label, parameters);
+            open.add(record);
+        }
+    }
+
+    /**
+     * Polls random labels from a LabelQueue and a TreeSet, labels share their parameters across a few nodes,
+     * so that the ties broken by the node are exercised, and some queued labels are removed
+     */
+    private static void checkLabelQueue(Random random) {
+        LabelArena arena = new LabelArena();
+        LabelQueue queue = new LabelQueue(arena);
+        TreeSet<int[]> expected = new TreeSet<>((a, b) -> {
+            int order = compare(a, b);
+            return order != 0 ? order : Integer.compare(a[5], b[5]);
+        });
+        List<int[]> queued = new ArrayList<>();
+        int lastTime = 0;
+        for (int i = 0; i < NUM_RANDOM_VECTORS; ++i) {
+            int[] record = {lastTime + random.nextInt(4), random.nextInt(3), random.nextInt(3) - 1,
+                    random.nextInt(3), random.nextInt(8), 0};
+            record[5] = arena.add(record[4], record, 0, LabelArena.NO_PARENT, LabelArena.NO_COVER_EDGE);
+            queue.add(record[5]);
+            expected.add(record);
+            queued.add(record);
+
+            if (random.nextInt(8) == 0) {
+                int[] removed = queued.remove(random.nextInt(queued.size()));
+                expected.remove(removed);
+                if (!queue.remove(removed[5])) {
+                    throw new IllegalStateException("LabelQueue misses label " + Arrays.toString(removed));
+                }
+            }
+            while (!expected.isEmpty() && (random.nextBoolean() || i == NUM_RANDOM_VECTORS - 1)) {
+                int[] next = expected.pollFirst();
+                queued.remove(next);
+                int label = queue.poll();
+                if (label != next[5]) {
+                    throw new IllegalStateException("LabelQueue polls label " + label + " instead of " +
+                            Arrays.toString(next));
+                }
+                lastTime = next[0];
+            }
+        }
+        if (!queue.isEmpty()) {
+            throw new IllegalStateException("LabelQueue keeps " + queue.size() + " labels");
+        }
+    }
+}
@@ -1,22 +1,53 @@
 package ctu.fel;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 public class Graph {
+    /**
+     * Binary snapshot layout (little endian): a header of SNAPSHOT_HEADER_INTS ints
+     * "magic, version, numNodes, numEdges, numGoals, 0, 0, 0", followed by the 4-byte sections
+     * ids, elevations, latitudes, projected latitudes, longitudes, projected longitudes (numNodes each),
+     * outgoing offsets (numNodes + 1), outgoing targets, times, consumptions (numEdges each),
+     * incoming offsets (numNodes + 1), incoming sources, times, consumptions (numEdges each) and goals (numGoals)
+     */
+    static final int SNAPSHOT_MAGIC = 0x5347434D;
+    static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_INTS = 8;
+
     private int numNodes;
     private int numEdges;
 
 //    private int numEdgeParameters;
 
-    private List<Node> nodes;
-    private List<Edge> edges;
+    private IntBuffer ids;
+    private IntBuffer elevations;
+    private FloatBuffer latitudes;
+    private FloatBuffer latitudesProjected;
+    private FloatBuffer longitudes;
+    private FloatBuffer longitudesProjected;
+
     private List<Integer> goals;
-    private List<Boolean> isGoal;
+    private boolean[] isGoal;
 
-    private List<List<Integer>> outgoingEdgeIndices;
-    private List<List<Integer>> incomingEdgeIndices;
+    // Rows and duration of reading the CSV files, 0 for a graph opened from a snapshot
+    private long numParsedRows;
+    private long parseNanos;
+
+    // Compressed sparse row adjacency, edges of a node are stored in the order of the edge file
+    private IntBuffer outgoingOffsets;
+    private IntBuffer outgoingTargets;
+    private IntBuffer outgoingTimes;
+    private IntBuffer outgoingConsumptions;
+
+    private IntBuffer incomingOffsets;
+    private IntBuffer incomingSources;
+    private IntBuffer incomingTimes;
+    private IntBuffer incomingConsumptions;
 
     int getNumNodes() {
         return numNodes;
@@ -27,33 +58,65 @@ public class Graph {
     }
 
     boolean isGoal(int ind){
-        return isGoal.get(ind);
+        return isGoal[ind];
     }
 
     /**
-     * Returns the list of edges starting at a node
+     * Outgoing edges of a node occupy the index range [getOutgoingBegin(node), getOutgoingEnd(node))
      * @param node  node to be examined
-     * @return  ArrayList of outgoing edges
+     * @return  index of the first outgoing edge
      */
-    List<Edge> getOutgoingEdges(int node) {
-        List<Edge> outEdges = new ArrayList<>();
-        for (int e : outgoingEdgeIndices.get(node)) {
-            outEdges.add(edges.get(e));
-        }
-        return outEdges;
+    int getOutgoingBegin(int node) {
+        return outgoingOffsets.get(node);
     }
 
     /**
-     * Returns the list of edges ending at a node
      * @param node  node to be examined
-     * @return  ArrayList of incoming edges
+     * @return  index past the last outgoing edge
      */
-    List<Edge> getIncomingEdges(int node) {
-        List<Edge> inEdges = new ArrayList<>();
-        for (int e : incomingEdgeIndices.get(node)) {
-            inEdges.add(edges.get(e));
-        }
-        return inEdges;
+    int getOutgoingEnd(int node) {
+        return outgoingOffsets.get(node + 1);
+    }
+
+    int getOutgoingTarget(int edge) {
+        return outgoingTargets.get(edge);
+    }
+
+    int getOutgoingTime(int edge) {
+        return outgoingTimes.get(edge);
+    }
+
+    int getOutgoingConsumption(int edge) {
+        return outgoingConsumptions.get(edge);
+    }
+
+    /**
+     * Incoming edges of a node occupy the index range [getIncomingBegin(node), getIncomingEnd(node))
+     * @param node  node to be examined
+     * @return  index of the first incoming edge
+     */
+    int getIncomingBegin(int node) {
+        return incomingOffsets.get(node);
+    }
+
+    /**
+     * @param node  node to be examined
+     * @return  index past the last incoming edge
+     */
+    int getIncomingEnd(int node) {
+        return incomingOffsets.get(node + 1);
+    }
+
+    int getIncomingSource(int edge) {
+        return incomingSources.get(edge);
+    }
+
+    int getIncomingTime(int edge) {
+        return incomingTimes.get(edge);
+    }
+
+    int getIncomingConsumption(int edge) {
+        return incomingConsumptions.get(edge);
     }
 
     List<Integer> getGoals() {
@@ -61,79 +124,291 @@ public class Graph {
     }
 
     /**
-     * Graph class constructor
+     * @return  number of rows read from the CSV files, 0 for a graph opened from a snapshot
+     */
+    long getNumParsedRows() {
+        return numParsedRows;
+    }
+
+    /**
+     * @return  duration of reading the CSV files [ns], 0 for a graph opened from a snapshot
+     */
+    long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * Graph class constructor, the files are parsed in parallel by CsvReader
      * @param nodePath  path to the node file of form "elevation, id, latitude, projectedLatitude, longitude, projected Longitude"
      * @param edgePath  path to the edge file of form "consumption, start, time, end"
      * @param goalPath  path to the goal file of list of goal indices separated by newlines
-     * @throws FileNotFoundException    if any of the files is not found
+     * @throws IOException  if any of the files cannot be read
      */
-    Graph(String nodePath, String edgePath, String goalPath) throws FileNotFoundException {
+    Graph(String nodePath, String edgePath, String goalPath) throws IOException {
 //    Graph(String nodePath, String edgePath) throws FileNotFoundException {
-        nodes = new ArrayList<>();
-        edges = new ArrayList<>();
-        goals = new ArrayList<>();
-
-        outgoingEdgeIndices = new ArrayList<>();
-        incomingEdgeIndices = new ArrayList<>();
-
         //Read input node file
-        File nodeFile = new File(nodePath);
-        Scanner nodeScan = new Scanner(nodeFile);
-        nodeScan.nextLine();
-        while (nodeScan.hasNextLine()) {
-            String[] split = nodeScan.nextLine().split(",");
-            int id = Integer.parseInt(split[1]);
-            float latProj = Float.parseFloat(split[3]);
-            float lat = Float.parseFloat(split[2]);
-            float lonProj = Float.parseFloat(split[5]);
-            float lon = Float.parseFloat(split[4]);
-            int elevation = Integer.parseInt(split[0]);
-
-            nodes.add(new Node(id, elevation, lat, latProj, lon, lonProj));
-            outgoingEdgeIndices.add(new ArrayList<>());
-            incomingEdgeIndices.add(new ArrayList<>());
-        }
-        numNodes = nodes.size();
+        CsvReader.Columns nodeColumns = CsvReader.readColumns(nodePath, true, "iiffff");
+        numNodes = nodeColumns.getNumRows();
+        elevations = IntBuffer.wrap(nodeColumns.getInts(0));
+        ids = IntBuffer.wrap(nodeColumns.getInts(1));
+        latitudes = FloatBuffer.wrap(nodeColumns.getFloats(2));
+        latitudesProjected = FloatBuffer.wrap(nodeColumns.getFloats(3));
+        longitudes = FloatBuffer.wrap(nodeColumns.getFloats(4));
+        longitudesProjected = FloatBuffer.wrap(nodeColumns.getFloats(5));
 
         // Read input edge file
-        File edgeFile = new File(edgePath);
-        Scanner edgeScan = new Scanner(edgeFile);
-        edgeScan.nextLine();
-        int index = 0;
-        while (edgeScan.hasNextLine()) {
-            String[] split = edgeScan.nextLine().split(",");
-            int start = Integer.parseInt(split[1]);
-            int end = Integer.parseInt(split[3]);
-            int time = Integer.parseInt(split[2]);
-            int cons = Integer.parseInt(split[0]);
-
-            outgoingEdgeIndices.get(start).add(index);
-            incomingEdgeIndices.get(end).add(index);
-
-            edges.add(new Edge(start, end, new int[]{time, cons}));
-            index += 1;
-        }
-        numEdges = edges.size();
+        CsvReader.Columns edgeColumns = CsvReader.readColumns(edgePath, true, "iiii");
+        numEdges = edgeColumns.getNumRows();
+        buildAdjacency(edgeColumns.getInts(1), edgeColumns.getInts(3), edgeColumns.getInts(2), edgeColumns.getInts(0));
 
-        isGoal = new ArrayList<>(Collections.nCopies(numNodes, false));
+        isGoal = new boolean[numNodes];
 
 //        for (int i = 0; i < 1000; ++i) {
 //            goals.add(i);
-//            isGoal.set(i, true);
+//            isGoal[i] = true;
 //        }
 
 //         Read goal file
-        isGoal = new ArrayList<>(Collections.nCopies(numNodes, false));
-        File goalFile = new File(goalPath);
-        Scanner goalScan = new Scanner(goalFile);
-        while (goalScan.hasNextLine()) {
-            int newGoal = Integer.parseInt(goalScan.nextLine());
+        CsvReader.Columns goalColumns = CsvReader.readColumns(goalPath, false, "i");
+        int[] goalColumn = goalColumns.getInts(0);
+        goals = new ArrayList<>(goalColumn.length);
+        for (int newGoal : goalColumn) {
             goals.add(newGoal);
-            isGoal.set(newGoal, true);
+            isGoal[newGoal] = true;
         }
+
+        numParsedRows = (long) numNodes + numEdges + goalColumn.length;
+        parseNanos = nodeColumns.getParseNanos() + edgeColumns.getParseNanos() + goalColumns.getParseNanos();
+    }
+
+    /**
+     * Opens a binary snapshot written by writeSnapshot. The node and edge sections are memory-mapped read-only,
+     * so they are paged in lazily and shared through the page cache by all processes mapping the same file.
+     * @param snapshotPath  path to the snapshot file
+     * @throws IOException  if the file cannot be read or is not a valid snapshot
+     */
+    Graph(String snapshotPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(snapshotPath), StandardOpenOption.READ)) {
+            IntBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 4L * SNAPSHOT_HEADER_INTS)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            if (header.get(0) != SNAPSHOT_MAGIC) {
+                throw new IOException(snapshotPath + " is not a graph snapshot");
+            }
+            if (header.get(1) != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported graph snapshot version " + header.get(1));
+            }
+            numNodes = header.get(2);
+            numEdges = header.get(3);
+            int numGoals = header.get(4);
+
+            long expectedSize = 4L * (SNAPSHOT_HEADER_INTS + 8L * numNodes + 2 + 6L * numEdges + numGoals);
+            if (channel.size() != expectedSize) {
+                throw new IOException("Graph snapshot " + snapshotPath + " has size " + channel.size() +
+                        ", expected " + expectedSize);
+            }
+
+            long position = 4L * SNAPSHOT_HEADER_INTS;
+            ids = mapSection(channel, position, numNodes).asIntBuffer();
+            position += 4L * numNodes;
+            elevations = mapSection(channel, position, numNodes).asIntBuffer();
+            position += 4L * numNodes;
+            latitudes = mapSection(channel, position, numNodes).asFloatBuffer();
+            position += 4L * numNodes;
+            latitudesProjected = mapSection(channel, position, numNodes).asFloatBuffer();
+            position += 4L * numNodes;
+            longitudes = mapSection(channel, position, numNodes).asFloatBuffer();
+            position += 4L * numNodes;
+            longitudesProjected = mapSection(channel, position, numNodes).asFloatBuffer();
+            position += 4L * numNodes;
+
+            outgoingOffsets = mapSection(channel, position, numNodes + 1).asIntBuffer();
+            position += 4L * (numNodes + 1);
+            outgoingTargets = mapSection(channel, position, numEdges).asIntBuffer();
+            position += 4L * numEdges;
+            outgoingTimes = mapSection(channel, position, numEdges).asIntBuffer();
+            position += 4L * numEdges;
+            outgoingConsumptions = mapSection(channel, position, numEdges).asIntBuffer();
+            position += 4L * numEdges;
+
+            incomingOffsets = mapSection(channel, position, numNodes + 1).asIntBuffer();
+            position += 4L * (numNodes + 1);
+            incomingSources = mapSection(channel, position, numEdges).asIntBuffer();
+            position += 4L * numEdges;
+            incomingTimes = mapSection(channel, position, numEdges).asIntBuffer();
+            position += 4L * numEdges;
+            incomingConsumptions = mapSection(channel, position, numEdges).asIntBuffer();
+            position += 4L * numEdges;
+
+            IntBuffer goalBuffer = mapSection(channel, position, numGoals).asIntBuffer();
+            goals = new ArrayList<>(numGoals);
+            isGoal = new boolean[numNodes];
+            for (int g = 0; g < numGoals; ++g) {
+                goals.add(goalBuffer.get(g));
+                isGoal[goalBuffer.get(g)] = true;
+            }
+        }
+    }
+
+    private static ByteBuffer mapSection(FileChannel channel, long position, int numValues) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * numValues).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes the graph into a binary snapshot that can be opened by the Graph(String) constructor
+     * @param snapshotPath  path of the snapshot file to be created
+     * @throws IOException  if the file cannot be written
+     */
+    void writeSnapshot(String snapshotPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(snapshotPath), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(numNodes).putInt(numEdges).putInt(goals.size())
+                    .putInt(0).putInt(0).putInt(0);
+
+            writeSection(channel, buffer, ids);
+            writeSection(channel, buffer, elevations);
+            writeSection(channel, buffer, latitudes);
+            writeSection(channel, buffer, latitudesProjected);
+            writeSection(channel, buffer, longitudes);
+            writeSection(channel, buffer, longitudesProjected);
+            writeSection(channel, buffer, outgoingOffsets);
+            writeSection(channel, buffer, outgoingTargets);
+            writeSection(channel, buffer, outgoingTimes);
+            writeSection(channel, buffer, outgoingConsumptions);
+            writeSection(channel, buffer, incomingOffsets);
+            writeSection(channel, buffer, incomingSources);
+            writeSection(channel, buffer, incomingTimes);
+            writeSection(channel, buffer, incomingConsumptions);
+            int[] goalArray = new int[goals.size()];
+            for (int g = 0; g < goalArray.length; ++g) {
+                goalArray[g] = goals.get(g);
+            }
+            writeSection(channel, buffer, IntBuffer.wrap(goalArray));
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static void writeSection(FileChannel channel, ByteBuffer buffer, IntBuffer section) throws IOException {
+        for (int i = 0; i < section.limit(); ++i) {
+            if (buffer.remaining() < 4) {
+                flush(channel, buffer);
+            }
+            buffer.putInt(section.get(i));
+        }
+    }
+
+    private static void writeSection(FileChannel channel, ByteBuffer buffer, FloatBuffer section) throws IOException {
+        for (int i = 0; i < section.limit(); ++i) {
+            if (buffer.remaining() < 4) {
+                flush(channel, buffer);
+            }
+            buffer.putFloat(section.get(i));
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Builds both CSR arrays from an edge list by a stable counting sort, so that the edges of every node
+     * keep their order from the edge list
+     * @param starts    start nodes of the edges
+     * @param ends  end nodes of the edges
+     * @param times time parameters of the edges
+     * @param consumptions  consumption parameters of the edges
+     */
+    private void buildAdjacency(int[] starts, int[] ends, int[] times, int[] consumptions) {
+        int[] outOffsets = new int[numNodes + 1];
+        int[] inOffsets = new int[numNodes + 1];
+        for (int e = 0; e < numEdges; ++e) {
+            outOffsets[starts[e] + 1] += 1;
+            inOffsets[ends[e] + 1] += 1;
+        }
+        for (int n = 0; n < numNodes; ++n) {
+            outOffsets[n + 1] += outOffsets[n];
+            inOffsets[n + 1] += inOffsets[n];
+        }
+
+        int[] outTargets = new int[numEdges];
+        int[] outTimes = new int[numEdges];
+        int[] outConsumptions = new int[numEdges];
+        int[] inSources = new int[numEdges];
+        int[] inTimes = new int[numEdges];
+        int[] inConsumptions = new int[numEdges];
+
+        int[] outFill = Arrays.copyOf(outOffsets, numNodes);
+        int[] inFill = Arrays.copyOf(inOffsets, numNodes);
+        for (int e = 0; e < numEdges; ++e) {
+            int out = outFill[starts[e]]++;
+            outTargets[out] = ends[e];
+            outTimes[out] = times[e];
+            outConsumptions[out] = consumptions[e];
+
+            int in = inFill[ends[e]]++;
+            inSources[in] = starts[e];
+            inTimes[in] = times[e];
+            inConsumptions[in] = consumptions[e];
+        }
+
+        outgoingOffsets = IntBuffer.wrap(outOffsets);
+        outgoingTargets = IntBuffer.wrap(outTargets);
+        outgoingTimes = IntBuffer.wrap(outTimes);
+        outgoingConsumptions = IntBuffer.wrap(outConsumptions);
+        incomingOffsets = IntBuffer.wrap(inOffsets);
+        incomingSources = IntBuffer.wrap(inSources);
+        incomingTimes = IntBuffer.wrap(inTimes);
+        incomingConsumptions = IntBuffer.wrap(inConsumptions);
+    }
+
+    /**
+     * Checksum of the adjacency, the edge parameters and the goals, used to match preprocessed data to the graph
+     * @return  64-bit FNV-1a hash over the int values
+     */
+    long getChecksum() {
+        long hash = 0xcbf29ce484222325L;
+        hash = mixChecksum(hash, numNodes);
+        hash = mixChecksum(hash, numEdges);
+        for (int n = 0; n <= numNodes; ++n) {
+            hash = mixChecksum(hash, outgoingOffsets.get(n));
+        }
+        for (int e = 0; e < numEdges; ++e) {
+            hash = mixChecksum(hash, outgoingTargets.get(e));
+            hash = mixChecksum(hash, outgoingTimes.get(e));
+            hash = mixChecksum(hash, outgoingConsumptions.get(e));
+        }
+        for (int goal : goals) {
+            hash = mixChecksum(hash, goal);
+        }
+        return hash;
+    }
+
+    private static long mixChecksum(long hash, int value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    int getElevation(int node) {
+        return elevations.get(node);
+    }
+
+    float getLatitudeProjected(int node) {
+        return latitudesProjected.get(node);
+    }
+
+    float getLongitudeProjected(int node) {
+        return longitudesProjected.get(node);
     }
 
     public Node getNode(int id) {
-        return nodes.get(id);
+        return new Node(ids.get(id), elevations.get(id), latitudes.get(id), latitudesProjected.get(id),
+                longitudes.get(id), longitudesProjected.get(id));
     }
 }
@@ -0,0 +1,620 @@
+package ctu.fel;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Generates synthetic road networks in the CSV format read by Graph(String, String, String) and in the snapshot
+ * format opened by Graph(String), for scaling experiments without the Bavaria data.
+ * The nodes lie on a square grid with jittered positions, every row is a street, the vertical streets are randomly
+ * interrupted except on the arterial columns, random diagonal streets cross the grid cells and every
+ * highwaySpacing-th row and column carries a highway with an exit every exitSpacing nodes. Arterial streets and
+ * highways are faster and, by air drag, consume more per distance. Elevations come from smooth value noise.
+ * Every road is a pair of opposite edges, an edge consumes potentialCoefficient * (elevation gain) +
+ * (rollingCoefficient + dragCoefficient * speed^2) * distance, a negative consumption is recuperated with
+ * recuperationEfficiency. The elevation terms cancel on a cycle, so there are no negative cycles.
+ * The edges are derived from the node data on the fly and only the node arrays are held in memory, 12 bytes a node.
+ * Projected coordinates are in meters, times in seconds and consumptions in the units of the battery capacity.
+ */
+public class GraphGenerator {
+    private static final double METERS_PER_DEGREE = 111320;
+    private static final double ORIGIN_LATITUDE = 48;
+    private static final double ORIGIN_LONGITUDE = 11;
+    // Wavelengths [m] and amplitudes [m] of the octaves of the elevation noise
+    private static final double[] RELIEF_WAVELENGTHS = {40000, 10000, 2500, 600};
+    private static final double[] RELIEF_AMPLITUDES = {300, 120, 40, 8};
+    private static final double BASE_ELEVATION = 450;
+    private static final long SALT_JITTER_X = 1;
+    private static final long SALT_JITTER_Y = 2;
+    private static final long SALT_VERTICAL = 3;
+    private static final long SALT_DIAGONAL = 4;
+    private static final long SALT_RELIEF = 16;
+    private static final int MAX_DEGREE = 12;
+
+    private static final int LOCAL = 0;
+    private static final int ARTERIAL = 1;
+    private static final int HIGHWAY = 2;
+
+    private final int numNodes;
+    private final long seed;
+    // Number of columns of the grid
+    private final int width;
+
+    private int numGoals;
+    private double gridSpacing = 150;
+    private double jitter = 0.4;
+    private double dropProbability = 0.25;
+    private double diagonalProbability = 0.1;
+    private int arterialSpacing = 8;
+    private int highwaySpacing = 64;
+    private int exitSpacing = 16;
+    private double[] speeds = {13.9, 22.2, 33.3};
+    private double reliefScale = 1;
+    private double potentialCoefficient = 7500;
+    private double rollingCoefficient = 150;
+    private double dragCoefficient = 0.4;
+    private double recuperationEfficiency = 0.7;
+
+    private int[] elevations;
+    private float[] latitudesProjected;
+    private float[] longitudesProjected;
+
+    /**
+     * @param numNodes  number of nodes of the graph
+     * @param seed  seed of the random choices, equal parameters and seeds give equal graphs
+     */
+    GraphGenerator(int numNodes, long seed) {
+        if (numNodes < 2) {
+            throw new IllegalArgumentException("A graph needs at least 2 nodes, " + numNodes + " requested");
+        }
+        this.numNodes = numNodes;
+        this.seed = seed;
+        this.width = (int) Math.ceil(Math.sqrt(numNodes));
+        this.numGoals = Math.max(1, numNodes / 100);
+    }
+
+    /**
+     * @param numGoals  number of goals drawn uniformly from the nodes, 1 % of the nodes by default
+     */
+    void setNumGoals(int numGoals) {
+        if (numGoals < 0 || numGoals > numNodes) {
+            throw new IllegalArgumentException("Invalid number of goals " + numGoals);
+        }
+        this.numGoals = numGoals;
+    }
+
+    /**
+     * @param gridSpacing   distance of neighboring grid nodes [m]
+     * @param jitter    maximal shift of a node from its grid position relative to gridSpacing, below 0.5
+     */
+    void setGridSpacing(double gridSpacing, double jitter) {
+        if (!(gridSpacing > 0) || jitter < 0 || jitter >= 0.5) {
+            throw new IllegalArgumentException("Invalid grid spacing " + gridSpacing + " or jitter " + jitter);
+        }
+        this.gridSpacing = gridSpacing;
+        this.jitter = jitter;
+        elevations = null;
+    }
+
+    /**
+     * @param dropProbability   probability that a vertical street off the arterial columns is missing
+     * @param diagonalProbability   probability that a grid cell is crossed by a diagonal street
+     */
+    void setStreetProbabilities(double dropProbability, double diagonalProbability) {
+        if (dropProbability < 0 || dropProbability > 1 || diagonalProbability < 0 || diagonalProbability > 1) {
+            throw new IllegalArgumentException("Invalid probabilities " + dropProbability + ", " +
+                    diagonalProbability);
+        }
+        this.dropProbability = dropProbability;
+        this.diagonalProbability = diagonalProbability;
+    }
+
+    /**
+     * @param arterialSpacing   every arterialSpacing-th row and column is an arterial street
+     * @param highwaySpacing    every highwaySpacing-th row and column carries a highway
+     * @param exitSpacing   number of grid nodes between highway exits, at least 2
+     */
+    void setRoadSpacings(int arterialSpacing, int highwaySpacing, int exitSpacing) {
+        if (arterialSpacing < 1 || highwaySpacing < 1 || exitSpacing < 2) {
+            throw new IllegalArgumentException("Invalid road spacings " + arterialSpacing + ", " + highwaySpacing +
+                    ", " + exitSpacing);
+        }
+        this.arterialSpacing = arterialSpacing;
+        this.highwaySpacing = highwaySpacing;
+        this.exitSpacing = exitSpacing;
+    }
+
+    /**
+     * @param localSpeed    speed of local streets [m/s]
+     * @param arterialSpeed speed of arterial streets [m/s]
+     * @param highwaySpeed  speed of highways [m/s]
+     */
+    void setSpeeds(double localSpeed, double arterialSpeed, double highwaySpeed) {
+        if (!(localSpeed > 0) || !(arterialSpeed > 0) || !(highwaySpeed > 0)) {
+            throw new IllegalArgumentException("Speeds must be positive");
+        }
+        speeds = new double[]{localSpeed, arterialSpeed, highwaySpeed};
+    }
+
+    /**
+     * @param reliefScale   multiplier of the elevation differences, 0 for a flat graph without negative consumptions
+     */
+    void setReliefScale(double reliefScale) {
+        if (reliefScale < 0) {
+            throw new IllegalArgumentException("Invalid relief scale " + reliefScale);
+        }
+        this.reliefScale = reliefScale;
+        elevations = null;
+    }
+
+    /**
+     * @param potentialCoefficient  consumption per meter of elevation gain
+     * @param rollingCoefficient    consumption per meter independent of the speed, positive
+     * @param dragCoefficient   consumption per meter and squared speed
+     * @param recuperationEfficiency    share of a negative consumption recuperated into the battery, in [0, 1]
+     */
+    void setConsumptionModel(double potentialCoefficient, double rollingCoefficient, double dragCoefficient,
+                             double recuperationEfficiency) {
+        if (potentialCoefficient < 0 || !(rollingCoefficient > 0) || dragCoefficient < 0 ||
+                recuperationEfficiency < 0 || recuperationEfficiency > 1) {
+            throw new IllegalArgumentException("Invalid consumption model");
+        }
+        this.potentialCoefficient = potentialCoefficient;
+        this.rollingCoefficient = rollingCoefficient;
+        this.dragCoefficient = dragCoefficient;
+        this.recuperationEfficiency = recuperationEfficiency;
+    }
+
+    /**
+     * Writes the graph into a snapshot that can be opened by the Graph(String) constructor. The sections are
+     * written in one pass over the nodes, each through its own buffer at its own file position.
+     * @param snapshotPath  path of the snapshot file to be created
+     * @throws IOException  if the file cannot be written
+     */
+    void writeSnapshot(String snapshotPath) throws IOException {
+        generateNodes();
+        int numEdges = countEdges();
+        int[] goals = drawGoals();
+
+        int[] neighbors = new int[MAX_DEGREE];
+        int[] roadClasses = new int[MAX_DEGREE];
+        try (FileChannel channel = FileChannel.open(Paths.get(snapshotPath), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4 * 8).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(Graph.SNAPSHOT_MAGIC).putInt(Graph.SNAPSHOT_VERSION).putInt(numNodes).putInt(numEdges)
+                    .putInt(goals.length).putInt(0).putInt(0).putInt(0).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+
+            long[] sizes = {numNodes, numNodes, numNodes, numNodes, numNodes, numNodes,
+                    numNodes + 1, numEdges, numEdges, numEdges, numNodes + 1, numEdges, numEdges, numEdges,
+                    goals.length};
+            SectionWriter[] sections = new SectionWriter[sizes.length];
+            long position = header.limit();
+            for (int s = 0; s < sizes.length; ++s) {
+                sections[s] = new SectionWriter(channel, position);
+                position += 4 * sizes[s];
+            }
+
+            int offset = 0;
+            for (int node = 0; node < numNodes; ++node) {
+                sections[0].putInt(node);
+                sections[1].putInt(elevations[node]);
+                sections[2].putFloat(getLatitude(node));
+                sections[3].putFloat(latitudesProjected[node]);
+                sections[4].putFloat(getLongitude(node));
+                sections[5].putFloat(longitudesProjected[node]);
+                sections[6].putInt(offset);
+                sections[10].putInt(offset);
+
+                // Roads are symmetric, the incoming edges come from the same neighbors in the same order
+                int degree = getNeighbors(node, neighbors, roadClasses);
+                for (int n = 0; n < degree; ++n) {
+                    int neighbor = neighbors[n];
+                    double distance = getDistance(node, neighbor);
+                    int time = getTime(distance, roadClasses[n]);
+                    sections[7].putInt(neighbor);
+                    sections[8].putInt(time);
+                    sections[9].putInt(getConsumption(node, neighbor, distance, roadClasses[n]));
+                    sections[11].putInt(neighbor);
+                    sections[12].putInt(time);
+                    sections[13].putInt(getConsumption(neighbor, node, distance, roadClasses[n]));
+                }
+                offset += degree;
+            }
+            sections[6].putInt(offset);
+            sections[10].putInt(offset);
+            for (int goal : goals) {
+                sections[14].putInt(goal);
+            }
+            for (SectionWriter section : sections) {
+                section.flush();
+            }
+        }
+        System.out.println("Generated snapshot -- " + numNodes + " nodes, " + numEdges + " edges, " +
+                goals.length + " goals");
+    }
+
+    /**
+     * Writes the graph into CSV files read by the Graph(String, String, String) constructor
+     * @param nodePath  path of the node file "elevation,id,lat,latProj,lon,lonProj"
+     * @param edgePath  path of the edge file "consumption,start,time,end"
+     * @param goalPath  path of the goal file with a goal per line
+     * @throws IOException  if a file cannot be written
+     */
+    void writeCsv(String nodePath, String edgePath, String goalPath) throws IOException {
+        generateNodes();
+        StringBuilder line = new StringBuilder(96);
+        try (Writer writer = Files.newBufferedWriter(Paths.get(nodePath), StandardCharsets.US_ASCII)) {
+            writer.write("elevation,id,lat,latProj,lon,lonProj\n");
+            for (int node = 0; node < numNodes; ++node) {
+                line.setLength(0);
+                line.append(elevations[node]).append(',').append(node).append(',');
+                appendDecimal(line, getLatitude(node));
+                line.append(',');
+                appendDecimal(line, latitudesProjected[node]);
+                line.append(',');
+                appendDecimal(line, getLongitude(node));
+                line.append(',');
+                appendDecimal(line, longitudesProjected[node]);
+                line.append('\n');
+                writer.append(line);
+            }
+        }
+
+        int numEdges = 0;
+        int[] neighbors = new int[MAX_DEGREE];
+        int[] roadClasses = new int[MAX_DEGREE];
+        try (Writer writer = Files.newBufferedWriter(Paths.get(edgePath), StandardCharsets.US_ASCII)) {
+            writer.write("consumption,start,time,end\n");
+            for (int node = 0; node < numNodes; ++node) {
+                int degree = getNeighbors(node, neighbors, roadClasses);
+                for (int n = 0; n < degree; ++n) {
+                    double distance = getDistance(node, neighbors[n]);
+                    line.setLength(0);
+                    line.append(getConsumption(node, neighbors[n], distance, roadClasses[n])).append(',')
+                            .append(node).append(',').append(getTime(distance, roadClasses[n])).append(',')
+                            .append(neighbors[n]).append('\n');
+                    writer.append(line);
+                }
+                numEdges += degree;
+            }
+        }
+
+        int[] goals = drawGoals();
+        try (Writer writer = Files.newBufferedWriter(Paths.get(goalPath), StandardCharsets.US_ASCII)) {
+            for (int goal : goals) {
+                writer.write(Integer.toString(goal));
+                writer.write('\n');
+            }
+        }
+        System.out.println("Generated CSV files -- " + numNodes + " nodes, " + numEdges + " edges, " +
+                goals.length + " goals");
+    }
+
+    /**
+     * Places the nodes on the jittered grid and samples their elevations
+     */
+    private void generateNodes() {
+        if (elevations != null) {
+            return;
+        }
+        elevations = new int[numNodes];
+        latitudesProjected = new float[numNodes];
+        longitudesProjected = new float[numNodes];
+        for (int node = 0; node < numNodes; ++node) {
+            double x = (node % width + jitter * (2 * getUniform(node, SALT_JITTER_X) - 1)) * gridSpacing;
+            double y = (node / width + jitter * (2 * getUniform(node, SALT_JITTER_Y) - 1)) * gridSpacing;
+            longitudesProjected[node] = (float) x;
+            latitudesProjected[node] = (float) y;
+            double elevation = 0;
+            for (int o = 0; o < RELIEF_WAVELENGTHS.length; ++o) {
+                elevation += RELIEF_AMPLITUDES[o] * getValueNoise(x / RELIEF_WAVELENGTHS[o],
+                        y / RELIEF_WAVELENGTHS[o], SALT_RELIEF + o);
+            }
+            elevations[node] = (int) Math.round(BASE_ELEVATION + reliefScale * elevation);
+        }
+    }
+
+    /**
+     * @return  number of directed edges
+     * @throws IllegalArgumentException if the edges do not fit the int indices of the graph
+     */
+    private int countEdges() {
+        int[] neighbors = new int[MAX_DEGREE];
+        int[] roadClasses = new int[MAX_DEGREE];
+        long numEdges = 0;
+        for (int node = 0; node < numNodes; ++node) {
+            numEdges += getNeighbors(node, neighbors, roadClasses);
+        }
+        if (numEdges > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Graph of " + numNodes + " nodes has too many edges -- " + numEdges);
+        }
+        return (int) numEdges;
+    }
+
+    /**
+     * Draws the goals by selection sampling, every node is a goal with equal probability
+     * @return  the goals in increasing order
+     */
+    private int[] drawGoals() {
+        Random random = new Random(seed);
+        int[] goals = new int[numGoals];
+        int numSelected = 0;
+        for (int node = 0; node < numNodes && numSelected < numGoals; ++node) {
+            if ((numNodes - node) * random.nextDouble() < numGoals - numSelected) {
+                goals[numSelected++] = node;
+            }
+        }
+        return goals;
+    }
+
+    /**
+     * Collects the road neighbors of a node in increasing order
+     * @param node  node to be examined
+     * @param neighbors output, the neighbors
+     * @param roadClasses   output, the classes of the roads to the neighbors
+     * @return  number of neighbors
+     */
+    private int getNeighbors(int node, int[] neighbors, int[] roadClasses) {
+        int row = node / width;
+        int column = node % width;
+        int degree = 0;
+
+        // Streets of the grid
+        if (column > 0) {
+            degree = addNeighbor(neighbors, roadClasses, degree, node - 1, getStreetClass(row));
+        }
+        if (exists(row, column + 1)) {
+            degree = addNeighbor(neighbors, roadClasses, degree, node + 1, getStreetClass(row));
+        }
+        if (row > 0 && hasVerticalStreet(node - width)) {
+            degree = addNeighbor(neighbors, roadClasses, degree, node - width, getStreetClass(column));
+        }
+        if (exists(row + 1, column) && hasVerticalStreet(node)) {
+            degree = addNeighbor(neighbors, roadClasses, degree, node + width, getStreetClass(column));
+        }
+
+        // Diagonal streets of the four cells around the node, orientation 0 joins the top left and bottom right
+        // corners of a cell, orientation 1 the top right and bottom left ones
+        if (getDiagonal(row - 1, column - 1) == 0) {
+            degree = addNeighbor(neighbors, roadClasses, degree, node - width - 1, LOCAL);
+        }
+        if (getDiagonal(row - 1, column) == 1) {
+            degree = addNeighbor(neighbors, roadClasses, degree, node - width + 1, LOCAL);
+        }
+        if (getDiagonal(row, column - 1) == 1) {
+            degree = addNeighbor(neighbors, roadClasses, degree, node + width - 1, LOCAL);
+        }
+        if (getDiagonal(row, column) == 0) {
+            degree = addNeighbor(neighbors, roadClasses, degree, node + width + 1, LOCAL);
+        }
+
+        // Highways between the exits
+        if (row % highwaySpacing == 0 && column % exitSpacing == 0) {
+            if (column >= exitSpacing) {
+                degree = addNeighbor(neighbors, roadClasses, degree, node - exitSpacing, HIGHWAY);
+            }
+            if (exists(row, column + exitSpacing)) {
+                degree = addNeighbor(neighbors, roadClasses, degree, node + exitSpacing, HIGHWAY);
+            }
+        }
+        if (column % highwaySpacing == 0 && row % exitSpacing == 0) {
+            if (row >= exitSpacing) {
+                degree = addNeighbor(neighbors, roadClasses, degree, node - exitSpacing * width, HIGHWAY);
+            }
+            if (exists(row + exitSpacing, column)) {
+                degree = addNeighbor(neighbors, roadClasses, degree, node + exitSpacing * width, HIGHWAY);
+            }
+        }
+        return degree;
+    }
+
+    /**
+     * Inserts a neighbor into the sorted neighbors
+     * @return  the new number of neighbors
+     */
+    private static int addNeighbor(int[] neighbors, int[] roadClasses, int degree, int neighbor, int roadClass) {
+        int i = degree;
+        while (i > 0 && neighbors[i - 1] > neighbor) {
+            neighbors[i] = neighbors[i - 1];
+            roadClasses[i] = roadClasses[i - 1];
+            --i;
+        }
+        neighbors[i] = neighbor;
+        roadClasses[i] = roadClass;
+        return degree + 1;
+    }
+
+    private boolean exists(int row, int column) {
+        return row >= 0 && column >= 0 && column < width && (long) row * width + column < numNodes;
+    }
+
+    private int getStreetClass(int line) {
+        return line % arterialSpacing == 0 ? ARTERIAL : LOCAL;
+    }
+
+    /**
+     * Arterial columns are never interrupted, every node reaches one along its row, so the graph is connected
+     * @param node  upper node of the street
+     */
+    private boolean hasVerticalStreet(int node) {
+        return node % width % arterialSpacing == 0 || getUniform(node, SALT_VERTICAL) >= dropProbability;
+    }
+
+    /**
+     * @param row   row of the top left corner of the cell
+     * @param column    column of the top left corner of the cell
+     * @return  orientation of the diagonal street of the cell, -1 if there is none
+     */
+    private int getDiagonal(int row, int column) {
+        if (!exists(row, column) || !exists(row + 1, column + 1)) {
+            return -1;
+        }
+        long cell = (long) row * width + column;
+        long hash = getHash(cell, SALT_DIAGONAL);
+        if ((hash >>> 11) * 0x1.0p-53 >= diagonalProbability) {
+            return -1;
+        }
+        return (int) (hash & 1);
+    }
+
+    private double getDistance(int from, int to) {
+        double latitudeDifference = latitudesProjected[to] - latitudesProjected[from];
+        double longitudeDifference = longitudesProjected[to] - longitudesProjected[from];
+        return Math.sqrt(latitudeDifference * latitudeDifference + longitudeDifference * longitudeDifference);
+    }
+
+    private int getTime(double distance, int roadClass) {
+        return Math.max(1, (int) Math.round(distance / speeds[roadClass]));
+    }
+
+    private int getConsumption(int from, int to, double distance, int roadClass) {
+        double speed = speeds[roadClass];
+        double consumption = potentialCoefficient * (elevations[to] - elevations[from]) +
+                (rollingCoefficient + dragCoefficient * speed * speed) * distance;
+        if (consumption < 0) {
+            consumption *= recuperationEfficiency;
+        }
+        return (int) Math.round(consumption);
+    }
+
+    private float getLatitude(int node) {
+        return (float) (ORIGIN_LATITUDE + latitudesProjected[node] / METERS_PER_DEGREE);
+    }
+
+    private float getLongitude(int node) {
+        return (float) (ORIGIN_LONGITUDE + longitudesProjected[node] /
+                (METERS_PER_DEGREE * Math.cos(Math.toRadians(ORIGIN_LATITUDE))));
+    }
+
+    /**
+     * Smoothly interpolated random values in [-1, 1] at the integer lattice points
+     */
+    private double getValueNoise(double x, double y, long salt) {
+        double floorX = Math.floor(x);
+        double floorY = Math.floor(y);
+        long cellX = (long) floorX;
+        long cellY = (long) floorY;
+        double fractionX = smoothStep(x - floorX);
+        double fractionY = smoothStep(y - floorY);
+        double top = interpolate(getLatticeValue(cellX, cellY, salt), getLatticeValue(cellX + 1, cellY, salt),
+                fractionX);
+        double bottom = interpolate(getLatticeValue(cellX, cellY + 1, salt),
+                getLatticeValue(cellX + 1, cellY + 1, salt), fractionX);
+        return interpolate(top, bottom, fractionY);
+    }
+
+    private double getLatticeValue(long x, long y, long salt) {
+        return 2 * getUniform(x * 0x9E3779B97F4A7C15L + y, salt) - 1;
+    }
+
+    private static double smoothStep(double t) {
+        return t * t * (3 - 2 * t);
+    }
+
+    private static double interpolate(double a, double b, double t) {
+        return a + (b - a) * t;
+    }
+
+    /**
+     * @return  uniform value in [0, 1) determined by the seed, the key and the salt
+     */
+    private double getUniform(long key, long salt) {
+        return (getHash(key, salt) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * SplitMix64 finalizer over the seed, the key and the salt
+     */
+    private long getHash(long key, long salt) {
+        long z = seed + key * 0xBF58476D1CE4E5B9L + salt * 0x94D049BB133111EBL;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Appends a value with six decimal places
+     */
+    private static void appendDecimal(StringBuilder line, double value) {
+        long scaled = Math.round(value * 1e6);
+        if (scaled < 0) {
+            line.append('-');
+            scaled = -scaled;
+        }
+        line.append(scaled / 1000000).append('.');
+        String fraction = Long.toString(scaled % 1000000);
+        for (int i = fraction.length(); i < 6; ++i) {
+            line.append('0');
+        }
+        line.append(fraction);
+    }
+
+    /**
+     * Buffered writer of a snapshot section starting at a given file position
+     */
+    private static class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        SectionWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < 4) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        void putFloat(float value) throws IOException {
+            if (buffer.remaining() < 4) {
+                flush();
+            }
+            buffer.putFloat(value);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Usage: GraphGenerator numNodes numGoals seed output, the output is a snapshot if it ends with ".graph",
+     * otherwise the prefix of the CSV files output_nodes.csv, output_edges.csv and output_goals.csv
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 4) {
+            System.out.println("Usage: GraphGenerator <numNodes> <numGoals> <seed> <output.graph | output prefix>");
+            return;
+        }
+        GraphGenerator generator = new GraphGenerator(Integer.parseInt(args[0]), Long.parseLong(args[2]));
+        generator.setNumGoals(Integer.parseInt(args[1]));
+
+        long startTime = System.nanoTime();
+        if (args[3].endsWith(".graph")) {
+            generator.writeSnapshot(args[3]);
+        }
+        else {
+            generator.writeCsv(args[3] + "_nodes.csv", args[3] + "_edges.csv", args[3] + "_goals.csv");
+        }
+        System.out.println("Generation duration [ms] -- " + ((System.nanoTime() - startTime) / 1000000));
+    }
+}
@@ -0,0 +1,79 @@
+package ctu.fel;
+
+import java.util.Arrays;
+
+/**
+ * Occupied cells of the epsilon grid of a node, an open-addressing hash map from the packed cell
+ * coordinates to the handle of the label representing the cell
+ */
+class GridCells {
+    private static final long EMPTY = -1L;
+
+    private long[] keys;
+    private int[] labels;
+    private int size;
+
+    GridCells() {
+        keys = new long[8];
+        labels = new int[8];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param cell  packed cell coordinates, not negative
+     * @return  handle of the label in the cell, -1 if the cell is empty
+     */
+    int get(long cell) {
+        int mask = keys.length - 1;
+        for (int slot = hash(cell) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == cell) {
+                return labels[slot];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Puts a label to a cell, a label already in the cell is replaced
+     * @param cell  packed cell coordinates, not negative
+     * @param label handle of the label
+     */
+    void put(long cell, int label) {
+        if (2 * (size + 1) > keys.length) {
+            resize();
+        }
+        int mask = keys.length - 1;
+        int slot = hash(cell) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != cell) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == EMPTY) {
+            keys[slot] = cell;
+            size += 1;
+        }
+        labels[slot] = label;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldLabels = labels;
+        keys = new long[2 * oldKeys.length];
+        labels = new int[2 * oldKeys.length];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldLabels[i]);
+            }
+        }
+    }
+
+    private static int hash(long cell) {
+        long h = cell * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,65 @@
+package ctu.fel;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints
+ */
+class IntList {
+    private int[] values;
+    private int size;
+
+    IntList() {
+        this(16);
+    }
+
+    IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, 2 * size);
+        }
+        values[size++] = value;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    void set(int index, int value) {
+        values[index] = value;
+    }
+
+    /**
+     * Removes a value by moving the last value into its place, the order of the values is not kept
+     * @param value value to be removed
+     * @return  true if the value was present, false otherwise
+     */
+    boolean remove(int value) {
+        for (int i = 0; i < size; ++i) {
+            if (values[i] == value) {
+                values[i] = values[--size];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
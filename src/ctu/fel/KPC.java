@@ -1,254 +1,951 @@
 package ctu.fel;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class KPC {
+    /**
+     * Cover file layout (little endian): a header of COVER_FILE_HEADER_BYTES bytes
+     * "magic, version, graph checksum (long), K, battery capacity, numNodes, numCoverNodes, numCoverEdges,
+     * numSequenceBytes (-1 if node sequences are not stored)", followed by the sections
+     * inCover (numNodes bytes, padded to a multiple of 4), cover edge offsets (numNodes + 1),
+     * targets, times, minSoCBefore, consumptions, maxSoCAfter (numCoverEdges each) and optionally
+     * sequence offsets (numCoverEdges + 1) and the sequence pool (numSequenceBytes, padded to a multiple of 4)
+     */
+    static final int COVER_FILE_MAGIC = 0x3143504B;
+    static final int COVER_FILE_VERSION = 2;
+    private static final int COVER_FILE_HEADER_BYTES = 48;
+
+    private static final int COVER_EDGE_BLOCK_SIZE = 256;
+
     private final int K;
 
+    private int numNodes;
     private int numCoverNodes;
-    private List<Boolean> inCover;
-    private Map<Integer, Map<Integer, List<CoverEdge>>> outgoingCoverEdges;
+    private int numCoverEdges;
+    private ByteBuffer inCover;
+
+    // Cover edges grouped by their start node, edges of a node are ordered by their end node
+    private IntBuffer coverEdgeOffsets;
+    private IntBuffer coverEdgeTargets;
+    private IntBuffer coverEdgeTimes;
+    private IntBuffer coverEdgeMinSoCBefore;
+    private IntBuffer coverEdgeConsumptions;
+    private IntBuffer coverEdgeMaxSoCAfter;
+
+    // Node sequences of the cover edges, null if they were not loaded. The inner nodes of a cover edge are
+    // stored in the pool as zigzag varint deltas, starting from the start node, the end node is its target.
+    private IntBuffer sequenceOffsets;
+    private ByteBuffer sequencePool;
 
     /**
-     * Constructor of the kPC cover (preferably initialized after the Planner class)
+     * Cover edges of a contiguous range of start nodes, built by one construction task
+     */
+    private static class CoverEdgeBlock {
+        private final IntList edgeCounts = new IntList();
+        private final IntList targets = new IntList();
+        private final IntList times = new IntList();
+        private final IntList minSoCBefore = new IntList();
+        private final IntList consumptions = new IntList();
+        private final IntList maxSoCAfter = new IntList();
+        private final IntList sequenceLengths = new IntList();
+        private byte[] sequencePool = new byte[1024];
+        private int sequencePoolSize;
+
+        private int numInitCoverEdges;
+        private int dominationPruned;
+
+        private void appendDelta(int delta) {
+            if (sequencePoolSize + 5 > sequencePool.length) {
+                sequencePool = Arrays.copyOf(sequencePool, 2 * sequencePool.length);
+            }
+            int zigzag = (delta << 1) ^ (delta >> 31);
+            while ((zigzag & ~0x7F) != 0) {
+                sequencePool[sequencePoolSize++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            sequencePool[sequencePoolSize++] = (byte) zigzag;
+        }
+    }
+
+    /**
+     * Per-thread state reused by the cover edge searches of all start nodes handled by the thread.
+     * The DFS path is kept on primitive stacks with the path parameters of every prefix, path membership
+     * and the candidate groups of the end nodes are stamped with an epoch per start node.
+     */
+    private static class CoverEdgeScratch {
+        private final int[] onPath;
+        private final int[] groupEpochs;
+        private final int[] groups;
+        private int epoch;
+
+        private int[] nodes = new int[16];
+        private int[] cursors = new int[16];
+        private int[] parameters = new int[4 * 16];
+
+        // Candidate cover edges of the current start node, grouped by their end node
+        private final IntList groupTargets = new IntList();
+        private final List<IntList> groupCandidates = new ArrayList<>();
+        private int[] candidateParameters = new int[4 * 16];
+        private final IntList candidateAlive = new IntList();
+        private final IntList candidateSequenceOffsets = new IntList();
+        private final IntList candidateSequenceNodes = new IntList();
+
+        CoverEdgeScratch(int numNodes) {
+            onPath = new int[numNodes];
+            groupEpochs = new int[numNodes];
+            groups = new int[numNodes];
+        }
+
+        private void ensureDepth(int depth) {
+            if (depth >= nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+                cursors = Arrays.copyOf(cursors, 2 * cursors.length);
+                parameters = Arrays.copyOf(parameters, 2 * parameters.length);
+            }
+        }
+    }
+
+    /**
+     * Reusable state of the vertex cover DFS. Paths are kept on primitive stacks of nodes and edge cursors,
+     * and path membership is stamped with an epoch per examined node, so the marker array is never cleared.
+     */
+    private static class CoverPathKernel {
+        private final int[] onPath;
+        private int epoch;
+
+        private final int[] forwardNodes;
+        private final int[] forwardCursors;
+        private final boolean[] forwardBuilt;
+        private final int[] backwardNodes;
+        private final int[] backwardCursors;
+
+        CoverPathKernel(int numNodes, int k) {
+            onPath = new int[numNodes];
+            forwardNodes = new int[k + 1];
+            forwardCursors = new int[k + 1];
+            forwardBuilt = new boolean[k + 1];
+            backwardNodes = new int[k + 1];
+            backwardCursors = new int[k + 1];
+        }
+    }
+
+    /**
+     * Constructor of the kPC cover (preferably initialized after the Planner class),
+     * cover edges are built on all available processors
      * @param graph graph to build the cover off
      * @param k the cover path size
      */
     KPC(Graph graph, int k) {
-        long startTime = System.nanoTime();
+        this(graph, k, Runtime.getRuntime().availableProcessors());
+    }
 
-        K = k;
+    /**
+     * Constructor of the kPC cover (preferably initialized after the Planner class)
+     * @param graph graph to build the cover off
+     * @param k the cover path size
+     * @param parallelism   number of threads building the cover edges
+     */
+    KPC(Graph graph, int k, int parallelism) {
+        this(graph, k, parallelism, null);
+    }
+
+    /**
+     * Constructor of the kPC cover collecting statistics of the construction
+     * @param graph graph to build the cover off
+     * @param k the cover path size
+     * @param parallelism   number of threads building the cover edges
+     * @param stats statistics to be filled by the construction, null if not collected
+     */
+    KPC(Graph graph, int k, int parallelism, KpcStats stats) {
+        long phaseStart = stats == null ? 0 : System.nanoTime();
+        KpcPhaseEvent phaseEvent = new KpcPhaseEvent();
+        phaseEvent.begin();
 
-        System.out.println("Starting " + this.K + "-PC construction.");
+        K = k;
 
         //Build vertex cover
-        this.inCover = new ArrayList<>(Collections.nCopies(graph.getNumNodes(), true));
+        this.numNodes = graph.getNumNodes();
+        byte[] cover = new byte[numNodes];
+        Arrays.fill(cover, (byte) 1);
+        this.inCover = ByteBuffer.wrap(cover);
         this.numCoverNodes = graph.getNumNodes();
+        CoverPathKernel kernel = new CoverPathKernel(numNodes, K);
         for (int n = 0; n < graph.getNumNodes(); ++n) {
-            if (n % 10000 == 0) {
-                System.out.println(n);
-            }
-
             // Keep goal vertices in the cover
             if (graph.isGoal(n)) {
                 continue;
             }
 
-            boolean stays = false;
-            Set<LinkedList<Integer>> builtPaths = new HashSet<>();
+            if (!liesOnCoverPath(graph, n, kernel)) {
+                this.numCoverNodes -= 1;
+                inCover.put(n, (byte) 0);
+            }
+        }
 
-            // Forward DFS
-            ArrayDeque<LinkedList<Integer>> toExpand = new ArrayDeque<>();
-            toExpand.push(new LinkedList<>(Arrays.asList(n)));
+        if (stats != null) {
+            long now = System.nanoTime();
+            stats.coverNanos = now - phaseStart;
+            phaseStart = now;
+        }
+        phaseEvent = commitPhaseEvent(phaseEvent, KpcPhaseEvent.VERTEX_COVER, 0, 0, 0);
+
+        // Build cover edges, blocks of start nodes are processed in parallel and concatenated in node order
+        int numBlocks = (numNodes + COVER_EDGE_BLOCK_SIZE - 1) / COVER_EDGE_BLOCK_SIZE;
+        List<Callable<CoverEdgeBlock>> tasks = new ArrayList<>(numBlocks);
+        ThreadLocal<CoverEdgeScratch> scratch = ThreadLocal.withInitial(() -> new CoverEdgeScratch(numNodes));
+        for (int b = 0; b < numBlocks; ++b) {
+            int firstNode = b * COVER_EDGE_BLOCK_SIZE;
+            int lastNode = Math.min(numNodes, firstNode + COVER_EDGE_BLOCK_SIZE);
+            tasks.add(() -> buildCoverEdgeBlock(graph, firstNode, lastNode, scratch.get()));
+        }
 
-            while (!toExpand.isEmpty()) {
-                LinkedList<Integer> currentPath = toExpand.pollFirst();
-                int currentNode = currentPath.getLast();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<CoverEdgeBlock> blocks = new ArrayList<>(numBlocks);
+        try {
+            // Future.get publishes the block built by the worker thread
+            for (Future<CoverEdgeBlock> future : pool.invokeAll(tasks)) {
+                blocks.add(future.get());
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cover edge construction was interrupted", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Cover edge construction failed", e.getCause());
+        }
+        finally {
+            pool.shutdown();
+        }
+        if (stats != null) {
+            long now = System.nanoTime();
+            stats.coverEdgeNanos = now - phaseStart;
+            phaseStart = now;
+        }
 
-                if (currentPath.size() + 1 == this.K) {
-                    stays = true;
-                    break;
-                }
+        int numInitCoverEdges = 0;
+        int numPrunedCoverEdges = 0;
+        int dominationPruned = 0;
+        int numSequenceBytes = 0;
+        for (CoverEdgeBlock block : blocks) {
+            numInitCoverEdges += block.numInitCoverEdges;
+            numPrunedCoverEdges += block.targets.size();
+            dominationPruned += block.dominationPruned;
+            numSequenceBytes += block.sequencePoolSize;
+        }
+        // Cover edges are pruned by domination within the tasks building them, so the pruning is a part of the phase
+        phaseEvent = commitPhaseEvent(phaseEvent, KpcPhaseEvent.COVER_EDGES, numInitCoverEdges, dominationPruned,
+                numPrunedCoverEdges);
+
+        int[] offsets = new int[numNodes + 1];
+        int[] targets = new int[numPrunedCoverEdges];
+        int[] times = new int[numPrunedCoverEdges];
+        int[] minSoCBefore = new int[numPrunedCoverEdges];
+        int[] consumptions = new int[numPrunedCoverEdges];
+        int[] maxSoCAfter = new int[numPrunedCoverEdges];
+        int[] nodeSequenceOffsets = new int[numPrunedCoverEdges + 1];
+        byte[] nodeSequencePool = new byte[numSequenceBytes];
+
+        int node = 0;
+        int edge = 0;
+        for (CoverEdgeBlock block : blocks) {
+            for (int n = 0; n < block.edgeCounts.size(); ++n) {
+                offsets[node + 1] = offsets[node] + block.edgeCounts.get(n);
+                node += 1;
+            }
+            for (int e = 0; e < block.targets.size(); ++e) {
+                targets[edge] = block.targets.get(e);
+                times[edge] = block.times.get(e);
+                minSoCBefore[edge] = block.minSoCBefore.get(e);
+                consumptions[edge] = block.consumptions.get(e);
+                maxSoCAfter[edge] = block.maxSoCAfter.get(e);
+                nodeSequenceOffsets[edge + 1] = nodeSequenceOffsets[edge] + block.sequenceLengths.get(e);
+                edge += 1;
+            }
+            System.arraycopy(block.sequencePool, 0, nodeSequencePool, nodeSequenceOffsets[edge] - block.sequencePoolSize,
+                    block.sequencePoolSize);
+        }
 
-                // Extend current path
-                for (Edge nextEdge : graph.getOutgoingEdges(currentNode)) {
-                    int nextNode = nextEdge.getEndPoint();
+        this.numCoverEdges = numPrunedCoverEdges;
+        this.coverEdgeOffsets = IntBuffer.wrap(offsets);
+        this.coverEdgeTargets = IntBuffer.wrap(targets);
+        this.coverEdgeTimes = IntBuffer.wrap(times);
+        this.coverEdgeMinSoCBefore = IntBuffer.wrap(minSoCBefore);
+        this.coverEdgeConsumptions = IntBuffer.wrap(consumptions);
+        this.coverEdgeMaxSoCAfter = IntBuffer.wrap(maxSoCAfter);
+        this.sequenceOffsets = IntBuffer.wrap(nodeSequenceOffsets);
+        this.sequencePool = ByteBuffer.wrap(nodeSequencePool);
+
+        commitPhaseEvent(phaseEvent, KpcPhaseEvent.ASSEMBLY, numInitCoverEdges, dominationPruned,
+                numPrunedCoverEdges);
+        if (stats != null) {
+            stats.assemblyNanos = System.nanoTime() - phaseStart;
+            stats.numNodes = numNodes;
+            stats.numEdges = graph.getNumEdges();
+            stats.numCoverNodes = numCoverNodes;
+            stats.numInitialCoverEdges = numInitCoverEdges;
+            stats.numCoverEdges = numPrunedCoverEdges;
+            stats.numDominationPruned = dominationPruned;
+            stats.compactFootprint = getCompactFootprint();
+            stats.objectFootprint = estimateObjectFootprint();
+        }
+    }
 
-                    // Prohibit loops
-                    if (currentPath.contains(nextNode)) {
-                        continue;
-                    }
+    /**
+     * Ends and commits the event of a construction phase if it is enabled and begins the event of the next phase
+     * @param event event of the finished phase
+     * @param phase name of the finished phase
+     * @return  the begun event of the next phase
+     */
+    private KpcPhaseEvent commitPhaseEvent(KpcPhaseEvent event, String phase, int numInitialCoverEdges,
+                                           int numDominationPruned, int numCoverEdges) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.k = K;
+            event.numCoverNodes = numCoverNodes;
+            event.numInitialCoverEdges = numInitialCoverEdges;
+            event.numDominationPruned = numDominationPruned;
+            event.numCoverEdges = numCoverEdges;
+            event.commit();
+        }
+        KpcPhaseEvent next = new KpcPhaseEvent();
+        next.begin();
+        return next;
+    }
+
+    /**
+     * Decides whether a node has to stay in the cover, i.e. whether it lies on a simple path of K - 1 nodes
+     * that avoids the current cover apart from the node itself. Forward paths from the node are enumerated
+     * first, every forward path that reaches a cover node is then extended backwards.
+     * @param graph graph to build the cover off
+     * @param n node in consideration
+     * @param kernel    reusable DFS state
+     * @return  true if the node stays in the cover
+     */
+    private boolean liesOnCoverPath(Graph graph, int n, CoverPathKernel kernel) {
+        int[] onPath = kernel.onPath;
+        int[] nodes = kernel.forwardNodes;
+        int[] cursors = kernel.forwardCursors;
+        int epoch = ++kernel.epoch;
+
+        nodes[0] = n;
+        cursors[0] = graph.getOutgoingBegin(n);
+        kernel.forwardBuilt[0] = false;
+        onPath[n] = epoch;
+        int size = 1;
+        if (size + 1 == this.K) {
+            return true;
+        }
 
-                    // New cover path is found
-                    if (inCover.get(nextNode)) {
-                        builtPaths.add(currentPath);
-                        continue;
+        // Forward DFS
+        while (size > 0) {
+            int top = size - 1;
+            int currentNode = nodes[top];
+            if (cursors[top] == graph.getOutgoingEnd(currentNode)) {
+                onPath[currentNode] = 0;
+                size -= 1;
+                continue;
+            }
+
+            int nextNode = graph.getOutgoingTarget(cursors[top]++);
+
+            // Prohibit loops
+            if (onPath[nextNode] == epoch) {
+                continue;
+            }
+
+            // New cover path is found, backward DFS is run once per forward path
+            if (inCover(nextNode)) {
+                if (!kernel.forwardBuilt[top]) {
+                    kernel.forwardBuilt[top] = true;
+                    if (extendsBackward(graph, size, kernel)) {
+                        return true;
                     }
+                }
+                continue;
+            }
+
+            nodes[size] = nextNode;
+            cursors[size] = graph.getOutgoingBegin(nextNode);
+            kernel.forwardBuilt[size] = false;
+            onPath[nextNode] = epoch;
+            size += 1;
+            if (size + 1 == this.K) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                    LinkedList<Integer> newPath = (LinkedList<Integer>) currentPath.clone();
-                    newPath.addLast(nextNode);
-                    toExpand.push(newPath);
+    /**
+     * Backward DFS from the forward path currently on the kernel stack
+     * @param graph graph to build the cover off
+     * @param forwardSize   number of nodes on the forward path
+     * @param kernel    DFS state holding the forward path
+     * @return  true if the path can be extended backwards to K - 1 nodes
+     */
+    private boolean extendsBackward(Graph graph, int forwardSize, CoverPathKernel kernel) {
+        int[] onPath = kernel.onPath;
+        int[] nodes = kernel.backwardNodes;
+        int[] cursors = kernel.backwardCursors;
+        int epoch = kernel.epoch;
+
+        // Level 0 is the first node of the forward path, level i > 0 the i-th prepended node
+        nodes[0] = kernel.forwardNodes[0];
+        cursors[0] = graph.getIncomingBegin(nodes[0]);
+        int level = 0;
+        while (level >= 0) {
+            int currentNode = nodes[level];
+            if (cursors[level] == graph.getIncomingEnd(currentNode)) {
+                if (level > 0) {
+                    onPath[currentNode] = 0;
                 }
+                level -= 1;
+                continue;
             }
 
-            if (stays) {
+            int previousNode = graph.getIncomingSource(cursors[level]++);
+
+            // Prohibit loops
+            if (onPath[previousNode] == epoch) {
                 continue;
             }
 
-            // Backward DFS for every path
-            for (LinkedList<Integer> initialPath : builtPaths) {
-                toExpand = new ArrayDeque<>();
-                toExpand.push(initialPath);
-                while (!toExpand.isEmpty()) {
-                    LinkedList<Integer> currentPath = toExpand.pollFirst();
-                    int currentNode = currentPath.getFirst();
+            // New cover path is found
+            if (inCover(previousNode)) {
+                continue;
+            }
 
-                    if (currentPath.size() + 1 == this.K) {
-                        stays = true;
-                        break;
-                    }
+            level += 1;
+            nodes[level] = previousNode;
+            cursors[level] = graph.getIncomingBegin(previousNode);
+            onPath[previousNode] = epoch;
+            if (forwardSize + level + 1 == this.K) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                    for (Edge previousEdge : graph.getIncomingEdges(currentNode)) {
-                        int previousNode = previousEdge.getStartPoint();
+    /**
+     * Builds the cover edges of a range of start nodes, runs on the worker threads of the construction pool
+     * @param graph graph to build the cover off
+     * @param firstNode first start node of the range
+     * @param lastNode  start node past the range
+     * @param scratch   scratch state of the calling thread
+     * @return  cover edges of the range ordered by start and end node
+     */
+    private CoverEdgeBlock buildCoverEdgeBlock(Graph graph, int firstNode, int lastNode, CoverEdgeScratch scratch) {
+        CoverEdgeBlock block = new CoverEdgeBlock();
+        for (int n = firstNode; n < lastNode; ++n) {
+            if (!inCover(n)) {
+                block.edgeCounts.add(0);
+                continue;
+            }
 
-                        // Prohibit loops
-                        if (currentPath.contains(previousNode)) {
-                            continue;
-                        }
+            int numEdgesBefore = block.targets.size();
+            buildCoverEdges(graph, n, scratch, block);
+            block.edgeCounts.add(block.targets.size() - numEdgesBefore);
+        }
+        return block;
+    }
 
-                        // New cover path is found
-                        if (inCover.get(previousNode)) {
-                            continue;
-                        }
+    /**
+     * DFS over the non-cover nodes from a cover node. The complete cover edges leaving a path are recorded
+     * in edge order before the path is extended, and the extensions are expanded in reverse edge order,
+     * which is the order a LIFO queue of paths would produce. Domination pruning among cover edges with
+     * the same end node keeps the earliest of equal edges, so this order fixes the resulting cover edges.
+     * @param graph graph to build the cover off
+     * @param n start node in the cover
+     * @param scratch   scratch state of the calling thread
+     * @param block block to append the pruned cover edges to
+     */
+    private void buildCoverEdges(Graph graph, int n, CoverEdgeScratch scratch, CoverEdgeBlock block) {
+        int epoch = ++scratch.epoch;
+        int[] onPath = scratch.onPath;
+        scratch.groupTargets.clear();
+        scratch.candidateAlive.clear();
+        scratch.candidateSequenceOffsets.clear();
+        scratch.candidateSequenceNodes.clear();
+
+        int[] initialParameters = Planner.getInitialPathParameters();
+        System.arraycopy(initialParameters, 0, scratch.parameters, 0, initialParameters.length);
+        scratch.nodes[0] = n;
+        onPath[n] = epoch;
+        recordCoverEdges(graph, 0, scratch, block);
+        scratch.cursors[0] = graph.getOutgoingEnd(n) - 1;
+
+        int depth = 0;
+        while (depth >= 0) {
+            int currentNode = scratch.nodes[depth];
+            if (scratch.cursors[depth] < graph.getOutgoingBegin(currentNode)) {
+                onPath[currentNode] = 0;
+                depth -= 1;
+                continue;
+            }
 
-                        LinkedList newPath = (LinkedList) currentPath.clone();          // SLOW
-                        newPath.addFirst(previousNode);
-                        toExpand.push(newPath);
-                    }
-                }
+            int e = scratch.cursors[depth]--;
+            int nextNode = graph.getOutgoingTarget(e);
+            // Prohibit loops, complete cover edges were recorded already
+            if (onPath[nextNode] == epoch || inCover(nextNode)) {
+                continue;
             }
 
-            if (!stays) {
-                this.numCoverNodes -= 1;
-                inCover.set(n, false);
+            scratch.ensureDepth(depth + 1);
+            linkSuffixEdge(scratch.parameters, depth, graph.getOutgoingTime(e), graph.getOutgoingConsumption(e));
+
+            // Path is infeasible
+            if (Planner.constrained && Planner.infeasiblePath(scratch.parameters[4 * depth + 5],
+                    scratch.parameters[4 * depth + 7])) {
+                continue;
             }
+
+            depth += 1;
+            scratch.nodes[depth] = nextNode;
+            onPath[nextNode] = epoch;
+            recordCoverEdges(graph, depth, scratch, block);
+            scratch.cursors[depth] = graph.getOutgoingEnd(nextNode) - 1;
         }
 
-        System.out.println("Initial number of vertices -- " + graph.getNumNodes());
-        System.out.println("Number of cover vertices -- " + this.numCoverNodes);
-        System.out.println("Relative vertex percentage -- " + ((float)this.numCoverNodes/(float)graph.getNumNodes() * 100));
+        // Emit surviving candidates ordered by end node, and by discovery within an end node
+        int[] endNodes = scratch.groupTargets.toArray();
+        Arrays.sort(endNodes);
+        for (int endNode : endNodes) {
+            IntList candidates = scratch.groupCandidates.get(scratch.groups[endNode]);
+            for (int i = 0; i < candidates.size(); ++i) {
+                int c = candidates.get(i);
+                if (scratch.candidateAlive.get(c) == 0) {
+                    continue;
+                }
+                block.targets.add(endNode);
+                block.times.add(scratch.candidateParameters[4 * c]);
+                block.minSoCBefore.add(scratch.candidateParameters[4 * c + 1]);
+                block.consumptions.add(scratch.candidateParameters[4 * c + 2]);
+                block.maxSoCAfter.add(scratch.candidateParameters[4 * c + 3]);
+
+                int poolSizeBefore = block.sequencePoolSize;
+                int previousNode = n;
+                int sequenceEnd = scratch.candidateSequenceOffsets.get(c + 1);
+                for (int j = scratch.candidateSequenceOffsets.get(c); j < sequenceEnd; ++j) {
+                    int sequenceNode = scratch.candidateSequenceNodes.get(j);
+                    block.appendDelta(sequenceNode - previousNode);
+                    previousNode = sequenceNode;
+                }
+                block.sequenceLengths.add(block.sequencePoolSize - poolSizeBefore);
+            }
+        }
+    }
 
-        // Build cover edges
-        int numInitCoverEdges = 0;
-        int numCoverEdges = 0;
-        int dominationPruned = 0;
+    /**
+     * Records the complete cover edges leaving the DFS path of the given depth with domination pruning
+     * among cover edges of the same end node
+     * @param graph graph to build the cover off
+     * @param depth depth of the last node of the path
+     * @param scratch   scratch state holding the path
+     * @param block block collecting the statistics
+     */
+    private void recordCoverEdges(Graph graph, int depth, CoverEdgeScratch scratch, CoverEdgeBlock block) {
+        int currentNode = scratch.nodes[depth];
+        int[] parameters = scratch.parameters;
+        int end = graph.getOutgoingEnd(currentNode);
+        for (int e = graph.getOutgoingBegin(currentNode); e < end; ++e) {
+            int nextNode = graph.getOutgoingTarget(e);
+            // Prohibit loops
+            if (scratch.onPath[nextNode] == scratch.epoch || !inCover(nextNode)) {
+                continue;
+            }
 
-        this.outgoingCoverEdges = new HashMap<>();
-        for (int n = 0; n < graph.getNumNodes(); ++n) {
-            if (!inCover.get(n)) {
+            scratch.ensureDepth(depth + 1);
+            parameters = scratch.parameters;
+            linkSuffixEdge(parameters, depth, graph.getOutgoingTime(e), graph.getOutgoingConsumption(e));
+            int newOffset = 4 * depth + 4;
+
+            // Path is infeasible
+            if (Planner.constrained && Planner.infeasiblePath(parameters[newOffset + 1], parameters[newOffset + 3])) {
                 continue;
             }
 
-            Map<Integer, List<CoverEdge>> tempCoverEdges = new HashMap<>();
+            // A complete cover edge is found
+            if (scratch.groupEpochs[nextNode] != scratch.epoch) {
+                scratch.groupEpochs[nextNode] = scratch.epoch;
+                scratch.groups[nextNode] = scratch.groupTargets.size();
+                if (scratch.groupTargets.size() == scratch.groupCandidates.size()) {
+                    scratch.groupCandidates.add(new IntList());
+                }
+                scratch.groupCandidates.get(scratch.groupTargets.size()).clear();
+                scratch.groupTargets.add(nextNode);
+            }
+            IntList candidates = scratch.groupCandidates.get(scratch.groups[nextNode]);
+            block.numInitCoverEdges += 1;
+
+            // Domination pruning
+            int[] candidateParameters = scratch.candidateParameters;
+            boolean isDominated = false;
+            for (int i = 0; i < candidates.size(); ++i) {
+                int current = candidates.get(i);
+                if (scratch.candidateAlive.get(current) != 0 &&
+                        Planner.dominanceCheck(candidateParameters, 4 * current, parameters, newOffset)) {
+                    isDominated = true;
+                    break;
+                }
+            }
+            if (isDominated) {
+                block.dominationPruned += 1;
+                continue;
+            }
+            for (int i = 0; i < candidates.size(); ++i) {
+                int current = candidates.get(i);
+                if (scratch.candidateAlive.get(current) != 0 &&
+                        Planner.dominanceCheck(parameters, newOffset, candidateParameters, 4 * current)) {
+                    scratch.candidateAlive.set(current, 0);
+                    block.dominationPruned += 1;
+                }
+            }
 
-            ArrayDeque<CoverEdge> toExpand = new ArrayDeque<>();
-            toExpand.addFirst(new CoverEdge(n));
+            int candidate = scratch.candidateAlive.size();
+            candidates.add(candidate);
+            scratch.candidateAlive.add(1);
+            if (4 * candidate + 4 > candidateParameters.length) {
+                scratch.candidateParameters = Arrays.copyOf(candidateParameters, 2 * candidateParameters.length);
+            }
+            System.arraycopy(parameters, newOffset, scratch.candidateParameters, 4 * candidate, 4);
+            if (candidate == 0) {
+                scratch.candidateSequenceOffsets.add(0);
+            }
+            for (int d = 1; d <= depth; ++d) {
+                scratch.candidateSequenceNodes.add(scratch.nodes[d]);
+            }
+            scratch.candidateSequenceOffsets.add(scratch.candidateSequenceNodes.size());
+        }
+    }
 
-            while (!toExpand.isEmpty()) {
-                CoverEdge currentCoverEdge = toExpand.pollFirst();
-                int currentNode = currentCoverEdge.getEndPoint();
+    /**
+     * Connects a suffix edge to a built path
+     * @param parameters    path parameters of the DFS stack, four per depth
+     * @param depth depth of the path to be augmented, the augmented path is written to depth + 1
+     * @param time  time of the suffix edge
+     * @param consumption   consumption of the suffix edge
+     */
+    private static void linkSuffixEdge(int[] parameters, int depth, int time, int consumption) {
+        int from = 4 * depth;
+        int to = from + 4;
 
-                for (Edge nextEdge : graph.getOutgoingEdges(currentNode)) {
-                    int nextNode = nextEdge.getEndPoint();
-                    // Prohibit loops
-                    if (currentCoverEdge.getNodeSequence().contains(nextNode)) {
-                        continue;
-                    }
+        // Path Parameter Update function
+        parameters[to] = parameters[from] + time;       // time
+        parameters[to + 1] = Math.max(parameters[from + 1], parameters[from + 2] + Math.max(0, consumption));    // minSoCBefore
+        parameters[to + 2] = Math.max(parameters[from + 2] + consumption, parameters[from + 1] -
+                Math.min(Planner.getBatteryCapacity(), Planner.getBatteryCapacity() - consumption));            // consumption
+        parameters[to + 3] = Math.min(parameters[from + 3] - consumption, Math.min(Planner.getBatteryCapacity(),
+                Planner.getBatteryCapacity() - consumption));             // maxSoCAfter
+    }
 
-                    CoverEdge newCoverEdge = linkSuffixEdge(currentCoverEdge, nextEdge);
+    /**
+     * Loads a cover saved by save(). The file is memory-mapped, so loading does not depend on the cover size.
+     * @param graph graph the cover was built off
+     * @param k the expected cover path size
+     * @param coverPath path to the cover file
+     * @throws IOException  if the file cannot be read, or it was built for a different graph, K or battery capacity
+     */
+    KPC(Graph graph, int k, String coverPath) throws IOException {
+        this(graph, k, coverPath, null);
+    }
 
-                    // Path is infeasible
-                    if (Planner.constrained && Planner.infeasiblePath(newCoverEdge)) {
-                        continue;
-                    }
+    /**
+     * Loads a cover saved by save() collecting statistics of the loading
+     * @param graph graph the cover was built off
+     * @param k the expected cover path size
+     * @param coverPath path to the cover file
+     * @param stats statistics to be filled by the loading, null if not collected
+     * @throws IOException  if the file cannot be read, or it was built for a different graph, K or battery capacity
+     */
+    KPC(Graph graph, int k, String coverPath, KpcStats stats) throws IOException {
+        long startTime = stats == null ? 0 : System.nanoTime();
+        K = k;
 
-                    // A complete cover edge is found
-                    if (inCover.get(nextNode)) {
-                        if (!tempCoverEdges.containsKey(nextNode)) {
-                            tempCoverEdges.put(nextNode, new ArrayList<>());
-                        }
-                        numInitCoverEdges += 1;
-
-                        // Domination pruning
-                        boolean isDominated = false;
-                        List<CoverEdge> toRemove = new ArrayList<>();
-                        for (int v = 0; v < tempCoverEdges.get(nextNode).size(); ++v) {
-                            CoverEdge current = tempCoverEdges.get(nextNode).get(v);
-                            if (Planner.dominanceCheck(current, newCoverEdge)) {
-                                isDominated = true;
-                            }
-                            else if (Planner.dominanceCheck(newCoverEdge, current)) {
-                                toRemove.add(current);
-                            }
-                        }
-
-                        if (isDominated) {
-                            dominationPruned += 1;
-                            continue;
-                        }
-
-                        for (int v = toRemove.size() - 1; v >= 0; --v) {
-                            tempCoverEdges.get(nextNode).remove(toRemove.get(v));
-                            dominationPruned += 1;
-                            numCoverEdges -= 1;
-                        }
-
-                        tempCoverEdges.get(nextNode).add(newCoverEdge);
-                        numCoverEdges += 1;
-                        continue;
-                    }
+        try (FileChannel channel = FileChannel.open(Paths.get(coverPath), StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, COVER_FILE_HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != COVER_FILE_MAGIC) {
+                throw new IOException(coverPath + " is not a cover file");
+            }
+            if (header.getInt(4) != COVER_FILE_VERSION) {
+                throw new IOException("Unsupported cover file version " + header.getInt(4));
+            }
+            if (header.getLong(8) != graph.getChecksum() || header.getInt(24) != graph.getNumNodes()) {
+                throw new IOException("Cover file " + coverPath + " was built for a different graph");
+            }
+            if (header.getInt(16) != K) {
+                throw new IOException("Cover file " + coverPath + " was built for K = " + header.getInt(16));
+            }
+            if (header.getInt(20) != Planner.getBatteryCapacity()) {
+                throw new IOException("Cover file " + coverPath + " was built for battery capacity " + header.getInt(20));
+            }
+            numNodes = header.getInt(24);
+            numCoverNodes = header.getInt(28);
+            numCoverEdges = header.getInt(32);
+            int numSequenceBytes = header.getInt(36);
+
+            long expectedSize = COVER_FILE_HEADER_BYTES + paddedCoverBytes(numNodes) + 4L * (numNodes + 1) +
+                    20L * numCoverEdges + (numSequenceBytes < 0 ? 0 : 4L * (numCoverEdges + 1) +
+                    paddedCoverBytes(numSequenceBytes));
+            if (channel.size() != expectedSize) {
+                throw new IOException("Cover file " + coverPath + " has size " + channel.size() + ", expected " +
+                        expectedSize);
+            }
 
-                    toExpand.push(newCoverEdge);
-                }
+            long position = COVER_FILE_HEADER_BYTES;
+            inCover = channel.map(FileChannel.MapMode.READ_ONLY, position, numNodes);
+            position += paddedCoverBytes(numNodes);
+            coverEdgeOffsets = mapSection(channel, position, numNodes + 1);
+            position += 4L * (numNodes + 1);
+            coverEdgeTargets = mapSection(channel, position, numCoverEdges);
+            position += 4L * numCoverEdges;
+            coverEdgeTimes = mapSection(channel, position, numCoverEdges);
+            position += 4L * numCoverEdges;
+            coverEdgeMinSoCBefore = mapSection(channel, position, numCoverEdges);
+            position += 4L * numCoverEdges;
+            coverEdgeConsumptions = mapSection(channel, position, numCoverEdges);
+            position += 4L * numCoverEdges;
+            coverEdgeMaxSoCAfter = mapSection(channel, position, numCoverEdges);
+            position += 4L * numCoverEdges;
+            if (numSequenceBytes >= 0) {
+                sequenceOffsets = mapSection(channel, position, numCoverEdges + 1);
+                position += 4L * (numCoverEdges + 1);
+                sequencePool = channel.map(FileChannel.MapMode.READ_ONLY, position, numSequenceBytes);
             }
-            outgoingCoverEdges.put(n, tempCoverEdges);
         }
 
-        System.out.println();
-        System.out.println("Initial number of edges -- " + graph.getNumEdges());
-        System.out.println("Initial number of cover edges -- " + numInitCoverEdges);
-        System.out.println("Pruned number of cover edges -- " + numCoverEdges);
-        System.out.println("Pruned by domination -- " + dominationPruned);
-        System.out.println("% pruned edges -- " + (100 * (float)(numInitCoverEdges - numCoverEdges)/(float)numInitCoverEdges));
-        System.out.println();
-        System.out.println("Finished " + K + "-PC construction.");
+        if (stats != null) {
+            stats.loaded = true;
+            stats.loadNanos = System.nanoTime() - startTime;
+            stats.numNodes = numNodes;
+            stats.numEdges = graph.getNumEdges();
+            stats.numCoverNodes = numCoverNodes;
+            stats.numCoverEdges = numCoverEdges;
+        }
+    }
 
-        long endTime = System.nanoTime();
-        System.out.println("Construction duration -- " + ((endTime - startTime) / 1000000000));
+    private static IntBuffer mapSection(FileChannel channel, long position, int numValues) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * numValues).order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+    }
+
+    private static long paddedCoverBytes(int numBytes) {
+        return (numBytes + 3) & ~3L;
     }
 
     /**
-     * Connects a suffix edge to a built path
-     * @param coverEdge path ot be augmented
-     * @param suffix    suffix segment
-     * @return  augmented path
+     * Saves the cover so that it can be loaded by the KPC(Graph, int, String) constructor
+     * @param graph graph the cover was built off
+     * @param coverPath path of the cover file to be created
+     * @param withNodeSequences true if the node sequences of the cover edges are to be stored
+     * @throws IOException  if the file cannot be written
      */
-    private CoverEdge linkSuffixEdge(CoverEdge coverEdge, Edge suffix) {
-        Deque<Integer> nodeSequence = coverEdge.getNodeSequence();
-        int[] parameters = new int[coverEdge.getParameters().length];
+    void save(Graph graph, String coverPath, boolean withNodeSequences) throws IOException {
+        if (withNodeSequences && !hasNodeSequences()) {
+            throw new IllegalStateException("Node sequences of the cover edges are not available");
+        }
 
-        nodeSequence.addLast(suffix.getEndPoint());
+        try (FileChannel channel = FileChannel.open(Paths.get(coverPath), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(COVER_FILE_MAGIC).putInt(COVER_FILE_VERSION).putLong(graph.getChecksum()).putInt(K)
+                    .putInt(Planner.getBatteryCapacity()).putInt(numNodes).putInt(numCoverNodes).putInt(numCoverEdges)
+                    .putInt(withNodeSequences ? sequencePool.limit() : -1);
+            while (buffer.position() < COVER_FILE_HEADER_BYTES) {
+                buffer.put((byte) 0);
+            }
 
-        // Path Parameter Update function
-        parameters[0] = coverEdge.getTime() + suffix.getTime();       // time
-        parameters[1] = Math.max(coverEdge.getMinSoCBefore(), coverEdge.getConsumption() + Math.max(0, suffix.getConsumption()));    // minSoCBefore
-        parameters[2] = Math.max(coverEdge.getConsumption() + suffix.getConsumption(), coverEdge.getMinSoCBefore() -
-                Math.min(Planner.getBatteryCapacity(), Planner.getBatteryCapacity() - suffix.getConsumption()));            // consumption
-        parameters[3] = Math.min(coverEdge.getMaxSoCAfter() - suffix.getConsumption(), Math.min(Planner.getBatteryCapacity(),
-                Planner.getBatteryCapacity() - suffix.getConsumption()));             // maxSoCAfter
+            for (long n = 0; n < paddedCoverBytes(numNodes); ++n) {
+                if (!buffer.hasRemaining()) {
+                    flush(channel, buffer);
+                }
+                buffer.put(n < numNodes ? inCover.get((int) n) : 0);
+            }
+            writeSection(channel, buffer, coverEdgeOffsets);
+            writeSection(channel, buffer, coverEdgeTargets);
+            writeSection(channel, buffer, coverEdgeTimes);
+            writeSection(channel, buffer, coverEdgeMinSoCBefore);
+            writeSection(channel, buffer, coverEdgeConsumptions);
+            writeSection(channel, buffer, coverEdgeMaxSoCAfter);
+            if (withNodeSequences) {
+                writeSection(channel, buffer, sequenceOffsets);
+                for (long b = 0; b < paddedCoverBytes(sequencePool.limit()); ++b) {
+                    if (!buffer.hasRemaining()) {
+                        flush(channel, buffer);
+                    }
+                    buffer.put(b < sequencePool.limit() ? sequencePool.get((int) b) : 0);
+                }
+            }
+            flush(channel, buffer);
+        }
+    }
 
-        return new CoverEdge(nodeSequence, parameters);
+    private static void writeSection(FileChannel channel, ByteBuffer buffer, IntBuffer section) throws IOException {
+        for (int i = 0; i < section.limit(); ++i) {
+            if (buffer.remaining() < 4) {
+                flush(channel, buffer);
+            }
+            buffer.putInt(section.get(i));
+        }
+    }
 
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
     }
 
     public int getNumCoverNodes() {
         return numCoverNodes;
     }
 
+    public int getNumCoverEdges() {
+        return numCoverEdges;
+    }
+
     public boolean inCover(int node) {
-        return inCover.get(node);
+        return inCover.get(node) != 0;
     }
 
     /**
-     * Get the list of cover edges outgoing from a cover node
+     * Cover edges outgoing from a cover node occupy the index range [getCoverEdgesBegin(node), getCoverEdgesEnd(node)),
+     * the range is empty for nodes outside of the cover
      * @param node  id of the node in consideration
-     * @return  map of the form <end node, associated edges> if the node is in the cover, null otherwise
+     * @return  index of the first outgoing cover edge
      */
-    Map<Integer, List<CoverEdge>> getOutgoingCoverEdges(int node) {
-        if (!inCover.get(node)) {
-            return null;
+    int getCoverEdgesBegin(int node) {
+        return coverEdgeOffsets.get(node);
+    }
+
+    /**
+     * @param node  id of the node in consideration
+     * @return  index past the last outgoing cover edge
+     */
+    int getCoverEdgesEnd(int node) {
+        return coverEdgeOffsets.get(node + 1);
+    }
+
+    int getCoverEdgeTarget(int coverEdge) {
+        return coverEdgeTargets.get(coverEdge);
+    }
+
+    int getCoverEdgeTime(int coverEdge) {
+        return coverEdgeTimes.get(coverEdge);
+    }
+
+    int getCoverEdgeMinSoCBefore(int coverEdge) {
+        return coverEdgeMinSoCBefore.get(coverEdge);
+    }
+
+    int getCoverEdgeConsumption(int coverEdge) {
+        return coverEdgeConsumptions.get(coverEdge);
+    }
+
+    int getCoverEdgeMaxSoCAfter(int coverEdge) {
+        return coverEdgeMaxSoCAfter.get(coverEdge);
+    }
+
+    boolean hasNodeSequences() {
+        return sequencePool != null;
+    }
+
+    /**
+     * Get the original graph nodes traversed by a cover edge, decoded from the sequence pool
+     * @param coverEdge index of the cover edge
+     * @return  node sequence from the start to the end node of the cover edge
+     */
+    int[] getCoverEdgeNodeSequence(int coverEdge) {
+        if (!hasNodeSequences()) {
+            throw new IllegalStateException("Node sequences of the cover edges were not loaded");
+        }
+
+        // Start node is the last node whose cover edges begin at or before the cover edge
+        int low = 0;
+        int high = numNodes - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (coverEdgeOffsets.get(middle) <= coverEdge) {
+                low = middle;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+
+        int begin = sequenceOffsets.get(coverEdge);
+        int end = sequenceOffsets.get(coverEdge + 1);
+        IntList nodeSequence = new IntList(end - begin + 2);
+        int node = low;
+        nodeSequence.add(node);
+        int position = begin;
+        while (position < end) {
+            int zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = sequencePool.get(position++);
+                zigzag |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            node += (zigzag >>> 1) ^ -(zigzag & 1);
+            nodeSequence.add(node);
+        }
+        nodeSequence.add(getCoverEdgeTarget(coverEdge));
+        return nodeSequence.toArray();
+    }
+
+    /**
+     * Materializes a cover edge with its node sequence
+     * @param coverEdge index of the cover edge
+     * @return  cover edge object
+     */
+    CoverEdge getCoverEdge(int coverEdge) {
+        return new CoverEdge(getCoverEdgeNodeSequence(coverEdge), new int[]{getCoverEdgeTime(coverEdge),
+                getCoverEdgeMinSoCBefore(coverEdge), getCoverEdgeConsumption(coverEdge), getCoverEdgeMaxSoCAfter(coverEdge)});
+    }
+
+    /**
+     * Counts the contents of the cover edge arrays and the sequence pool, array headers are not included
+     * @return  estimated heap bytes
+     */
+    long getCompactFootprint() {
+        long bytes = numNodes + 4L * (numNodes + 1) + 20L * numCoverEdges;
+        if (hasNodeSequences()) {
+            bytes += 4L * (numCoverEdges + 1) + sequencePool.limit();
         }
-        return outgoingCoverEdges.get(node);
+        return bytes;
     }
 
+    /**
+     * Estimates the heap bytes of the same cover edges held as CoverEdge objects with a LinkedList of boxed nodes,
+     * in a HashMap per start node, assuming compressed oops: 16 B per object header, 24 B per list node,
+     * 16 B per Integer outside of the Integer cache, 32 B per map entry
+     * @return  estimated heap bytes
+     */
+    long estimateObjectFootprint() {
+        long bytes = 48L * numCoverNodes;
+        for (int e = 0; e < numCoverEdges; ++e) {
+            // CoverEdge, its parameter array, the list with its nodes, map entry and boxed end node
+            bytes += 24 + 32 + 32 + 32 + 16;
+            if (hasNodeSequences()) {
+                int[] nodeSequence = getCoverEdgeNodeSequence(e);
+                for (int node : nodeSequence) {
+                    bytes += 24 + (node < 128 ? 0 : 16);
+                }
+            }
+        }
+        return bytes;
+    }
 }
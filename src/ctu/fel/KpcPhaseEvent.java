@@ -0,0 +1,37 @@
+package ctu.fel;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning a phase of the kPC construction, counters not known after the phase are 0
+ */
+@Name("ctu.fel.KpcPhase")
+@jdk.jfr.Label("kPC Construction Phase")
+@Category("Routing")
+@Description("Vertex cover, cover edges with their domination pruning, or assembly of the cover edge arrays")
+class KpcPhaseEvent extends Event {
+    static final String VERTEX_COVER = "vertex cover";
+    static final String COVER_EDGES = "cover edges";
+    static final String ASSEMBLY = "assembly";
+
+    @jdk.jfr.Label("Phase")
+    String phase;
+
+    @jdk.jfr.Label("K")
+    int k;
+
+    @jdk.jfr.Label("Cover Nodes")
+    int numCoverNodes;
+
+    @jdk.jfr.Label("Initial Cover Edges")
+    int numInitialCoverEdges;
+
+    @jdk.jfr.Label("Pruned by Domination")
+    int numDominationPruned;
+
+    @jdk.jfr.Label("Cover Edges")
+    int numCoverEdges;
+}
@@ -0,0 +1,138 @@
+package ctu.fel;
+
+/**
+ * Counters and phase durations of a kPC construction, filled by the construction it is passed to.
+ * A construction without statistics skips the timing and the footprint estimate.
+ * A loaded cover only fills the node and edge counts and the load duration.
+ */
+class KpcStats {
+    int numNodes;
+    int numEdges;
+    int numCoverNodes;
+    int numInitialCoverEdges;
+    int numCoverEdges;
+    int numDominationPruned;
+    long compactFootprint;
+    long objectFootprint;
+
+    long coverNanos;
+    long coverEdgeNanos;
+    long assemblyNanos;
+    boolean loaded;
+    long loadNanos;
+
+    int getNumNodes() {
+        return numNodes;
+    }
+
+    int getNumEdges() {
+        return numEdges;
+    }
+
+    /**
+     * @return  number of nodes kept in the cover
+     */
+    int getNumCoverNodes() {
+        return numCoverNodes;
+    }
+
+    /**
+     * @return  number of cover edges found before the pruning
+     */
+    int getNumInitialCoverEdges() {
+        return numInitialCoverEdges;
+    }
+
+    /**
+     * @return  number of cover edges after the pruning
+     */
+    int getNumCoverEdges() {
+        return numCoverEdges;
+    }
+
+    /**
+     * @return  number of cover edges pruned as dominated by a parallel cover edge
+     */
+    int getNumDominationPruned() {
+        return numDominationPruned;
+    }
+
+    /**
+     * @return  estimated heap bytes of the cover edges in the compact arrays, the array contents without headers
+     */
+    long getCompactFootprint() {
+        return compactFootprint;
+    }
+
+    /**
+     * @return  estimated heap bytes of the same cover edges held as objects, see KPC.estimateObjectFootprint()
+     */
+    long getObjectFootprint() {
+        return objectFootprint;
+    }
+
+    /**
+     * @return  duration of the vertex cover selection [ns]
+     */
+    long getCoverNanos() {
+        return coverNanos;
+    }
+
+    /**
+     * @return  duration of the parallel cover edge searches [ns]
+     */
+    long getCoverEdgeNanos() {
+        return coverEdgeNanos;
+    }
+
+    /**
+     * @return  duration of the concatenation of the cover edge blocks [ns]
+     */
+    long getAssemblyNanos() {
+        return assemblyNanos;
+    }
+
+    /**
+     * @return  true if the cover was loaded from a file instead of built
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return  duration of mapping and validating the cover file [ns]
+     */
+    long getLoadNanos() {
+        return loadNanos;
+    }
+
+    long getTotalNanos() {
+        return coverNanos + coverEdgeNanos + assemblyNanos + loadNanos;
+    }
+
+    @Override
+    public String toString() {
+        if (loaded) {
+            return "Initial number of vertices -- " + numNodes + "\n" +
+                    "Number of cover vertices -- " + numCoverNodes + "\n" +
+                    "Initial number of edges -- " + numEdges + "\n" +
+                    "Number of cover edges -- " + numCoverEdges + "\n" +
+                    "Load duration [ms] -- " + SearchStats.toMillis(loadNanos);
+        }
+        return "Initial number of vertices -- " + numNodes + "\n" +
+                "Number of cover vertices -- " + numCoverNodes + "\n" +
+                "Relative vertex percentage -- " + (100f * numCoverNodes / numNodes) + "\n" +
+                "Initial number of edges -- " + numEdges + "\n" +
+                "Initial number of cover edges -- " + numInitialCoverEdges + "\n" +
+                "Pruned number of cover edges -- " + numCoverEdges + "\n" +
+                "Pruned by domination -- " + numDominationPruned + "\n" +
+                "% pruned edges -- " + (100f * (numInitialCoverEdges - numCoverEdges) / numInitialCoverEdges) + "\n" +
+                "Estimated cover edge heap as CoverEdge objects with linked node lists [bytes] -- " +
+                objectFootprint + "\n" +
+                "Estimated cover edge heap as compact arrays [bytes] -- " + compactFootprint + "\n" +
+                "Cover duration [ms] -- " + SearchStats.toMillis(coverNanos) + "\n" +
+                "Cover edge duration [ms] -- " + SearchStats.toMillis(coverEdgeNanos) + "\n" +
+                "Assembly duration [ms] -- " + SearchStats.toMillis(assemblyNanos) + "\n" +
+                "Construction duration [ms] -- " + SearchStats.toMillis(getTotalNanos());
+    }
+}
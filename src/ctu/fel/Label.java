@@ -5,12 +5,19 @@ import java.util.Arrays;
 public class Label extends Path implements Comparable<Label> {
     private final int node;
     private final int[] parameters;
-//    private final int coverEdgeID;
-//    Label parent;
+    // Route tree of the search that produced the label and the entry of the label in it, null if not known
+    private final RouteTree routes;
+    private final int entry;
 
     public Label(int node, int[] parameters){
+        this(node, parameters, null, RouteTree.NO_PARENT);
+    }
+
+    Label(int node, int[] parameters, RouteTree routes, int entry) {
         this.node = node;
         this.parameters = parameters;
+        this.routes = routes;
+        this.entry = entry;
     }
 
     /**
@@ -55,6 +62,19 @@ public class Label extends Path implements Comparable<Label> {
         return node;
     }
 
+    /**
+     * Reconstructs the route of the label, cover edges of a kPC search are unpacked only by this call
+     * @return  graph nodes of the route from the search source to the node of the label
+     * @throws IllegalStateException    if the label was not produced by a search, or the cover edges
+     *                                  of the route have no node sequences
+     */
+    public int[] getRoute() {
+        if (routes == null) {
+            throw new IllegalStateException("Label was not produced by a search");
+        }
+        return routes.getRoute(entry);
+    }
+
     @Override
     public int[] getParameters() {
         return parameters;
@@ -0,0 +1,147 @@
+package ctu.fel;
+
+import java.util.Arrays;
+
+/**
+ * Storage of the labels created by a search. The node, the four path parameters and the parent of a label
+ * are kept in parallel primitive arrays, a label is addressed by its int handle, which is its index in the arrays.
+ * Labels are never removed, so a handle stays valid until the arena is cleared.
+ * Every label records its parent and the cover edge it was extended across. The labels returned by a search are
+ * copied with their ancestors to a RouteTree, which reconstructs their routes on demand.
+ */
+class LabelArena {
+    static final int NO_PARENT = -1;
+    static final int NO_COVER_EDGE = -1;
+
+    private int[] nodes;
+    private int[] times;
+    private int[] minSoCBefore;
+    private int[] consumptions;
+    private int[] maxSoCAfter;
+    private int[] parents;
+    private int[] coverEdges;
+    private int size;
+
+    LabelArena() {
+        this(1024);
+    }
+
+    LabelArena(int capacity) {
+        capacity = Math.max(1, capacity);
+        nodes = new int[capacity];
+        times = new int[capacity];
+        minSoCBefore = new int[capacity];
+        consumptions = new int[capacity];
+        maxSoCAfter = new int[capacity];
+        parents = new int[capacity];
+        coverEdges = new int[capacity];
+    }
+
+    /**
+     * Stores a new label
+     * @param node  node of the label
+     * @param parameters    array holding the path parameters of the label
+     * @param offset    index of the time parameter in the array
+     * @param parent    handle of the label the new label was extended from, NO_PARENT for the source label
+     * @param coverEdge cover edge the label was extended across, NO_COVER_EDGE for a graph edge
+     * @return  handle of the new label
+     */
+    int add(int node, int[] parameters, int offset, int parent, int coverEdge) {
+        if (size == nodes.length) {
+            int capacity = 2 * size;
+            nodes = Arrays.copyOf(nodes, capacity);
+            times = Arrays.copyOf(times, capacity);
+            minSoCBefore = Arrays.copyOf(minSoCBefore, capacity);
+            consumptions = Arrays.copyOf(consumptions, capacity);
+            maxSoCAfter = Arrays.copyOf(maxSoCAfter, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            coverEdges = Arrays.copyOf(coverEdges, capacity);
+        }
+        nodes[size] = node;
+        times[size] = parameters[offset];
+        minSoCBefore[size] = parameters[offset + 1];
+        consumptions[size] = parameters[offset + 2];
+        maxSoCAfter[size] = parameters[offset + 3];
+        parents[size] = parent;
+        coverEdges[size] = coverEdge;
+        return size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int getNode(int label) {
+        return nodes[label];
+    }
+
+    int getTime(int label) {
+        return times[label];
+    }
+
+    int getMinSoCBefore(int label) {
+        return minSoCBefore[label];
+    }
+
+    int getConsumption(int label) {
+        return consumptions[label];
+    }
+
+    int getMaxSoCAfter(int label) {
+        return maxSoCAfter[label];
+    }
+
+    int getParent(int label) {
+        return parents[label];
+    }
+
+    int getCoverEdge(int label) {
+        return coverEdges[label];
+    }
+
+    /**
+     * Copies the path parameters of a label
+     * @param label handle of the label
+     * @param parameters    array to copy the parameters to
+     * @param offset    index to copy the time parameter to
+     */
+    void getParameters(int label, int[] parameters, int offset) {
+        parameters[offset] = times[label];
+        parameters[offset + 1] = minSoCBefore[label];
+        parameters[offset + 2] = consumptions[label];
+        parameters[offset + 3] = maxSoCAfter[label];
+    }
+
+    /**
+     * Lexicographic ordering of labels, the same as Label.compareTo
+     * @param l1    handle of the first label
+     * @param l2    handle of the second label
+     * @return  negative if the first label precedes, 0 if the labels are equal, positive otherwise
+     */
+    int compare(int l1, int l2) {
+        if (times[l1] != times[l2]) {
+            return Integer.compare(times[l1], times[l2]);
+        }
+        if (minSoCBefore[l1] != minSoCBefore[l2]) {
+            return Integer.compare(minSoCBefore[l1], minSoCBefore[l2]);
+        }
+        if (consumptions[l1] != consumptions[l2]) {
+            return Integer.compare(consumptions[l1], consumptions[l2]);
+        }
+        if (maxSoCAfter[l1] != maxSoCAfter[l2]) {
+            return Integer.compare(maxSoCAfter[l2], maxSoCAfter[l1]);
+        }
+        return Integer.compare(nodes[l1], nodes[l2]);
+    }
+
+    /**
+     * @return  heap bytes of the arena arrays
+     */
+    long getFootprint() {
+        return 7L * 4 * nodes.length;
+    }
+}
@@ -0,0 +1,13 @@
+package ctu.fel;
+
+/**
+ * Receives the labels of the goal nodes as they are closed by a search. The searches close labels in
+ * lexicographic order, a closed label is thus final and belongs to the Pareto set of its node.
+ * The listener is called by the thread running the search, which waits while the listener blocks.
+ */
+interface LabelListener {
+    /**
+     * @param label closed label of a goal node, the node is given by label.getNode()
+     */
+    void onSettled(Label label);
+}
@@ -0,0 +1,228 @@
+package ctu.fel;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Priority queue of label handles in the lexicographic order of LabelArena.compare.
+ * Labels are bucketed by time in a radix heap: bucket i holds labels whose time differs from the time of the
+ * last polled label in the i-th lowest bit at most. Labels with the time of the last polled label are kept in
+ * a binary heap keyed by the remaining parameters and the node, packed into two longs. The time of an added
+ * label must not be lower than the time of the last polled one, which holds for the label-setting searches
+ * as edge times are not negative.
+ * Removed labels are only marked and dropped when they are reached by polling or bucket redistribution.
+ */
+class LabelQueue {
+    private static final byte OUTSIDE = 0;
+    private static final byte QUEUED = 1;
+    private static final byte REMOVED = 2;
+
+    private static final int NUM_BUCKETS = 33;
+
+    private final LabelArena arena;
+    private byte[] states = new byte[1024];
+    private int size;
+    private int lastTime;
+
+    // Buckets of labels with a time above lastTime, bucket 0 is the heap
+    private final IntList[] buckets = new IntList[NUM_BUCKETS];
+
+    private int[] heapLabels = new int[64];
+    private long[] heapKeys = new long[64];
+    private long[] heapTieKeys = new long[64];
+    private int heapSize;
+
+    LabelQueue(LabelArena arena) {
+        this.arena = arena;
+        for (int i = 1; i < NUM_BUCKETS; ++i) {
+            buckets[i] = new IntList();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds a label to the queue
+     * @param label handle of the label
+     * @throws IllegalArgumentException if the time of the label is lower than the time of the last polled label
+     */
+    void add(int label) {
+        int time = arena.getTime(label);
+        if (time < lastTime) {
+            throw new IllegalArgumentException("Label time " + time + " is lower than the last polled time " +
+                    lastTime);
+        }
+        if (label >= states.length) {
+            states = Arrays.copyOf(states, Math.max(2 * states.length, label + 1));
+        }
+        states[label] = QUEUED;
+        size += 1;
+        insert(label, time);
+    }
+
+    /**
+     * Removes a label from the queue, the label is only marked as removed
+     * @param label handle of the label
+     * @return  true if the label was queued, false otherwise
+     */
+    boolean remove(int label) {
+        if (label >= states.length || states[label] != QUEUED) {
+            return false;
+        }
+        states[label] = REMOVED;
+        size -= 1;
+        return true;
+    }
+
+    /**
+     * Removes the lexicographically first label from the queue
+     * @return  handle of the label
+     * @throws NoSuchElementException   if the queue is empty
+     */
+    int poll() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        while (true) {
+            if (heapSize == 0) {
+                redistribute();
+            }
+            int label = heapPoll();
+            if (states[label] == QUEUED) {
+                states[label] = OUTSIDE;
+                size -= 1;
+                return label;
+            }
+        }
+    }
+
+    private void insert(int label, int time) {
+        if (time == lastTime) {
+            heapAdd(label);
+        }
+        else {
+            buckets[32 - Integer.numberOfLeadingZeros(time ^ lastTime)].add(label);
+        }
+    }
+
+    /**
+     * Moves the labels of the lowest non-empty bucket to lower buckets with lastTime set to their minimal time
+     */
+    private void redistribute() {
+        for (int i = 1; i < NUM_BUCKETS; ++i) {
+            IntList bucket = buckets[i];
+            boolean hasQueued = false;
+            int minTime = Integer.MAX_VALUE;
+            for (int j = 0; j < bucket.size(); ++j) {
+                int label = bucket.get(j);
+                if (states[label] == QUEUED) {
+                    hasQueued = true;
+                    minTime = Math.min(minTime, arena.getTime(label));
+                }
+            }
+            if (!hasQueued) {
+                bucket.clear();
+                continue;
+            }
+
+            lastTime = minTime;
+            for (int j = 0; j < bucket.size(); ++j) {
+                int label = bucket.get(j);
+                if (states[label] == QUEUED) {
+                    insert(label, arena.getTime(label));
+                }
+            }
+            bucket.clear();
+            return;
+        }
+    }
+
+    /**
+     * Key of the parameters following the time, minSoCBefore in the high and consumption in the low half
+     */
+    private long getKey(int label) {
+        return ((long) arena.getMinSoCBefore(label) << 32) |
+                ((arena.getConsumption(label) - (long) Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Key of maxSoCAfter, inverted as it is maximized, in the high and the node in the low half
+     */
+    private long getTieKey(int label) {
+        return ((long) ~arena.getMaxSoCAfter(label) << 32) | (arena.getNode(label) & 0xFFFFFFFFL);
+    }
+
+    private boolean heapLess(int i, int j) {
+        if (heapKeys[i] != heapKeys[j]) {
+            return heapKeys[i] < heapKeys[j];
+        }
+        if (heapTieKeys[i] != heapTieKeys[j]) {
+            return heapTieKeys[i] < heapTieKeys[j];
+        }
+        return heapLabels[i] < heapLabels[j];
+    }
+
+    private void heapAdd(int label) {
+        if (heapSize == heapLabels.length) {
+            heapLabels = Arrays.copyOf(heapLabels, 2 * heapSize);
+            heapKeys = Arrays.copyOf(heapKeys, 2 * heapSize);
+            heapTieKeys = Arrays.copyOf(heapTieKeys, 2 * heapSize);
+        }
+        int i = heapSize++;
+        heapLabels[i] = label;
+        heapKeys[i] = getKey(label);
+        heapTieKeys[i] = getTieKey(label);
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!heapLess(i, parent)) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private int heapPoll() {
+        int label = heapLabels[0];
+        heapSize -= 1;
+        if (heapSize > 0) {
+            heapLabels[0] = heapLabels[heapSize];
+            heapKeys[0] = heapKeys[heapSize];
+            heapTieKeys[0] = heapTieKeys[heapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && heapLess(child + 1, child)) {
+                    child += 1;
+                }
+                if (!heapLess(child, i)) {
+                    break;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+        return label;
+    }
+
+    private void swap(int i, int j) {
+        int label = heapLabels[i];
+        heapLabels[i] = heapLabels[j];
+        heapLabels[j] = label;
+        long key = heapKeys[i];
+        heapKeys[i] = heapKeys[j];
+        heapKeys[j] = key;
+        long tieKey = heapTieKeys[i];
+        heapTieKeys[i] = heapTieKeys[j];
+        heapTieKeys[j] = tieKey;
+    }
+}
@@ -0,0 +1,67 @@
+package ctu.fel;
+
+/**
+ * Counts and phase durations of the landmark preprocessing, filled by the preprocessing it is passed to.
+ * Loaded landmarks only fill the counts and the load duration.
+ */
+class LandmarkStats {
+    int numNodes;
+    int numLandmarks;
+
+    long selectionNanos;
+    long distanceNanos;
+    boolean loaded;
+    long loadNanos;
+
+    int getNumNodes() {
+        return numNodes;
+    }
+
+    int getNumLandmarks() {
+        return numLandmarks;
+    }
+
+    /**
+     * @return  duration of the farthest point selection of the landmarks [ns]
+     */
+    long getSelectionNanos() {
+        return selectionNanos;
+    }
+
+    /**
+     * @return  duration of the shortest time and consumption searches from and to the landmarks [ns]
+     */
+    long getDistanceNanos() {
+        return distanceNanos;
+    }
+
+    /**
+     * @return  true if the landmarks were loaded from a file instead of computed
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return  duration of mapping and validating the landmark file [ns]
+     */
+    long getLoadNanos() {
+        return loadNanos;
+    }
+
+    long getTotalNanos() {
+        return selectionNanos + distanceNanos + loadNanos;
+    }
+
+    @Override
+    public String toString() {
+        if (loaded) {
+            return "Number of landmarks -- " + numLandmarks + "\n" +
+                    "Load duration [ms] -- " + SearchStats.toMillis(loadNanos);
+        }
+        return "Number of landmarks -- " + numLandmarks + "\n" +
+                "Selection duration [ms] -- " + SearchStats.toMillis(selectionNanos) + "\n" +
+                "Distance duration [ms] -- " + SearchStats.toMillis(distanceNanos) + "\n" +
+                "Preprocessing duration [ms] -- " + SearchStats.toMillis(getTotalNanos());
+    }
+}
@@ -0,0 +1,332 @@
+package ctu.fel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Landmark (ALT) distances for target pruning without a search at query time. Landmarks are picked by farthest
+ * point selection over the projected node coordinates, and the shortest times and consumptions from every
+ * landmark to every node and back are stored. By the triangle inequality, which holds for the consumptions as well
+ * as long as they form no negative cycle, d(v, t) >= d(v, l) - d(t, l) and d(v, t) >= d(l, t) - d(l, v) for every
+ * landmark l, the maximum over the landmarks bounds a path from v to the target t.
+ * Distances are stored node-major, the entries of the landmarks of a node are adjacent.
+ */
+class Landmarks {
+    /**
+     * Landmark file layout (little endian): a header of LANDMARK_FILE_HEADER_BYTES bytes
+     * "magic, version, graph checksum (long), numNodes, numLandmarks, 0, 0", followed by the landmark node ids
+     * (numLandmarks) and the sections forward times, backward times, forward consumptions, backward consumptions
+     * (numNodes * numLandmarks each)
+     */
+    static final int LANDMARK_FILE_MAGIC = 0x4B444D4C;
+    static final int LANDMARK_FILE_VERSION = 1;
+    private static final int LANDMARK_FILE_HEADER_BYTES = 32;
+
+    private final int numNodes;
+    private final int numLandmarks;
+    private final IntBuffer landmarks;
+    // Entry node * numLandmarks + l holds the distance from landmark l to the node, and back
+    private final IntBuffer forwardTimes;
+    private final IntBuffer backwardTimes;
+    private final IntBuffer forwardConsumptions;
+    private final IntBuffer backwardConsumptions;
+
+    /**
+     * Selects the landmarks and computes their distances, the landmarks are searched in parallel
+     * @param graph graph to preprocess
+     * @param numLandmarks  number of landmarks
+     * @throws IllegalStateException    if the consumptions of the graph form a negative cycle
+     */
+    Landmarks(Graph graph, int numLandmarks) {
+        this(graph, numLandmarks, null);
+    }
+
+    /**
+     * Selects the landmarks and computes their distances collecting statistics of the preprocessing
+     * @param graph graph to preprocess
+     * @param numLandmarks  number of landmarks
+     * @param stats statistics to be filled by the preprocessing, null if not collected
+     * @throws IllegalStateException    if the consumptions of the graph form a negative cycle
+     */
+    Landmarks(Graph graph, int numLandmarks, LandmarkStats stats) {
+        long phaseStart = stats == null ? 0 : System.nanoTime();
+
+        this.numNodes = graph.getNumNodes();
+        this.numLandmarks = Math.min(numLandmarks, numNodes);
+        int[] selected = selectLandmarks(graph, this.numLandmarks);
+        if (stats != null) {
+            long now = System.nanoTime();
+            stats.selectionNanos = now - phaseStart;
+            phaseStart = now;
+        }
+
+        int[][] forwardTimeRows = new int[this.numLandmarks][];
+        int[][] backwardTimeRows = new int[this.numLandmarks][];
+        int[][] forwardConsumptionRows = new int[this.numLandmarks][];
+        int[][] backwardConsumptionRows = new int[this.numLandmarks][];
+        IntStream.range(0, this.numLandmarks).parallel().forEach(l -> {
+            forwardTimeRows[l] = ReverseSearchBounds.shortestTimes(graph, selected[l], false);
+            backwardTimeRows[l] = ReverseSearchBounds.shortestTimes(graph, selected[l], true);
+            forwardConsumptionRows[l] = ReverseSearchBounds.shortestConsumptions(graph, selected[l], false);
+            backwardConsumptionRows[l] = ReverseSearchBounds.shortestConsumptions(graph, selected[l], true);
+        });
+
+        this.landmarks = IntBuffer.wrap(selected);
+        this.forwardTimes = IntBuffer.wrap(interleave(forwardTimeRows));
+        this.backwardTimes = IntBuffer.wrap(interleave(backwardTimeRows));
+        this.forwardConsumptions = IntBuffer.wrap(interleave(forwardConsumptionRows));
+        this.backwardConsumptions = IntBuffer.wrap(interleave(backwardConsumptionRows));
+
+        if (stats != null) {
+            stats.distanceNanos = System.nanoTime() - phaseStart;
+            stats.numNodes = numNodes;
+            stats.numLandmarks = this.numLandmarks;
+        }
+    }
+
+    /**
+     * Loads landmarks saved by save(). The file is memory-mapped.
+     * @param graph graph the landmarks were computed for
+     * @param landmarkPath  path to the landmark file
+     * @throws IOException  if the file cannot be read, or it was computed for a different graph
+     */
+    Landmarks(Graph graph, String landmarkPath) throws IOException {
+        this(graph, landmarkPath, null);
+    }
+
+    /**
+     * Loads landmarks saved by save() collecting statistics of the loading
+     * @param graph graph the landmarks were computed for
+     * @param landmarkPath  path to the landmark file
+     * @param stats statistics to be filled by the loading, null if not collected
+     * @throws IOException  if the file cannot be read, or it was computed for a different graph
+     */
+    Landmarks(Graph graph, String landmarkPath, LandmarkStats stats) throws IOException {
+        long startTime = stats == null ? 0 : System.nanoTime();
+        try (FileChannel channel = FileChannel.open(Paths.get(landmarkPath), StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, LANDMARK_FILE_HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != LANDMARK_FILE_MAGIC) {
+                throw new IOException(landmarkPath + " is not a landmark file");
+            }
+            if (header.getInt(4) != LANDMARK_FILE_VERSION) {
+                throw new IOException("Unsupported landmark file version " + header.getInt(4));
+            }
+            if (header.getLong(8) != graph.getChecksum() || header.getInt(16) != graph.getNumNodes()) {
+                throw new IOException("Landmark file " + landmarkPath + " was computed for a different graph");
+            }
+            numNodes = header.getInt(16);
+            numLandmarks = header.getInt(20);
+
+            long sectionSize = (long) numNodes * numLandmarks;
+            long expectedSize = LANDMARK_FILE_HEADER_BYTES + 4L * numLandmarks + 16L * sectionSize;
+            if (channel.size() != expectedSize) {
+                throw new IOException("Landmark file " + landmarkPath + " has size " + channel.size() +
+                        ", expected " + expectedSize);
+            }
+
+            long position = LANDMARK_FILE_HEADER_BYTES;
+            landmarks = mapSection(channel, position, numLandmarks);
+            position += 4L * numLandmarks;
+            forwardTimes = mapSection(channel, position, sectionSize);
+            position += 4L * sectionSize;
+            backwardTimes = mapSection(channel, position, sectionSize);
+            position += 4L * sectionSize;
+            forwardConsumptions = mapSection(channel, position, sectionSize);
+            position += 4L * sectionSize;
+            backwardConsumptions = mapSection(channel, position, sectionSize);
+        }
+
+        if (stats != null) {
+            stats.loaded = true;
+            stats.loadNanos = System.nanoTime() - startTime;
+            stats.numNodes = numNodes;
+            stats.numLandmarks = numLandmarks;
+        }
+    }
+
+    int getNumLandmarks() {
+        return numLandmarks;
+    }
+
+    int getLandmark(int index) {
+        return landmarks.get(index);
+    }
+
+    /**
+     * @param target    the node id of the target
+     * @return  bounds of the paths to the target for target pruning
+     */
+    TargetBounds getBounds(int target) {
+        return new LandmarkBounds(target);
+    }
+
+    /**
+     * Bounds of the paths to one target computed from the landmark distances on demand
+     */
+    private class LandmarkBounds extends TargetBounds {
+        private final int target;
+
+        LandmarkBounds(int target) {
+            this.target = target;
+        }
+
+        @Override
+        int getTarget() {
+            return target;
+        }
+
+        @Override
+        int getTimeBound(int node) {
+            long bound = lowerBound(forwardTimes, backwardTimes, node, target);
+            return bound == UNREACHABLE ? UNREACHABLE : (int) Math.max(0, bound);
+        }
+
+        @Override
+        int getConsumptionBound(int node) {
+            return (int) Math.max(Integer.MIN_VALUE, lowerBound(forwardConsumptions, backwardConsumptions, node,
+                    target));
+        }
+    }
+
+    /**
+     * @return  the maximal landmark bound of the distance from the node to the target, UNREACHABLE if a landmark
+     *          proves that there is no path, Long.MIN_VALUE if no landmark gives a bound
+     */
+    private long lowerBound(IntBuffer forward, IntBuffer backward, int node, int target) {
+        long bound = Long.MIN_VALUE;
+        int nodeOffset = node * numLandmarks;
+        int targetOffset = target * numLandmarks;
+        for (int l = 0; l < numLandmarks; ++l) {
+            int nodeToLandmark = backward.get(nodeOffset + l);
+            int targetToLandmark = backward.get(targetOffset + l);
+            if (targetToLandmark != TargetBounds.UNREACHABLE) {
+                // A node with a path to the target reaches every landmark the target reaches
+                if (nodeToLandmark == TargetBounds.UNREACHABLE) {
+                    return TargetBounds.UNREACHABLE;
+                }
+                bound = Math.max(bound, (long) nodeToLandmark - targetToLandmark);
+            }
+
+            int landmarkToNode = forward.get(nodeOffset + l);
+            int landmarkToTarget = forward.get(targetOffset + l);
+            if (landmarkToNode != TargetBounds.UNREACHABLE) {
+                // The target is reached from every landmark that reaches a node with a path to the target
+                if (landmarkToTarget == TargetBounds.UNREACHABLE) {
+                    return TargetBounds.UNREACHABLE;
+                }
+                bound = Math.max(bound, (long) landmarkToTarget - landmarkToNode);
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Farthest point selection, the first landmark is the node farthest from node 0, every next landmark is
+     * the node farthest from the landmarks selected before
+     */
+    private static int[] selectLandmarks(Graph graph, int numLandmarks) {
+        int numNodes = graph.getNumNodes();
+        float[] latitudes = new float[numNodes];
+        float[] longitudes = new float[numNodes];
+        for (int n = 0; n < numNodes; ++n) {
+            latitudes[n] = graph.getLatitudeProjected(n);
+            longitudes[n] = graph.getLongitudeProjected(n);
+        }
+
+        int[] selected = new int[numLandmarks];
+        double[] distances = new double[numNodes];
+        int farthest = 0;
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        updateDistances(latitudes, longitudes, 0, distances);
+        for (int l = 0; l < numLandmarks; ++l) {
+            for (int n = 0; n < numNodes; ++n) {
+                if (distances[n] > distances[farthest]) {
+                    farthest = n;
+                }
+            }
+            if (l == 0) {
+                Arrays.fill(distances, Double.POSITIVE_INFINITY);
+            }
+            selected[l] = farthest;
+            updateDistances(latitudes, longitudes, farthest, distances);
+        }
+        return selected;
+    }
+
+    private static void updateDistances(float[] latitudes, float[] longitudes, int from, double[] distances) {
+        for (int n = 0; n < distances.length; ++n) {
+            double latitudeDifference = latitudes[n] - latitudes[from];
+            double longitudeDifference = longitudes[n] - longitudes[from];
+            distances[n] = Math.min(distances[n], Math.sqrt(latitudeDifference * latitudeDifference +
+                    longitudeDifference * longitudeDifference));
+        }
+    }
+
+    /**
+     * @return  the rows of the landmarks interleaved into a node-major array
+     */
+    private int[] interleave(int[][] rows) {
+        int[] values = new int[numNodes * numLandmarks];
+        for (int l = 0; l < numLandmarks; ++l) {
+            for (int n = 0; n < numNodes; ++n) {
+                values[n * numLandmarks + l] = rows[l][n];
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Saves the landmarks so that they can be loaded by the Landmarks(Graph, String) constructor
+     * @param graph graph the landmarks were computed for
+     * @param landmarkPath  path of the landmark file to be created
+     * @throws IOException  if the file cannot be written
+     */
+    void save(Graph graph, String landmarkPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(landmarkPath), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(LANDMARK_FILE_MAGIC).putInt(LANDMARK_FILE_VERSION).putLong(graph.getChecksum())
+                    .putInt(numNodes).putInt(numLandmarks);
+            while (buffer.position() < LANDMARK_FILE_HEADER_BYTES) {
+                buffer.put((byte) 0);
+            }
+
+            writeSection(channel, buffer, landmarks);
+            writeSection(channel, buffer, forwardTimes);
+            writeSection(channel, buffer, backwardTimes);
+            writeSection(channel, buffer, forwardConsumptions);
+            writeSection(channel, buffer, backwardConsumptions);
+            flush(channel, buffer);
+        }
+    }
+
+    private static IntBuffer mapSection(FileChannel channel, long position, long numValues) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * numValues).order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+    }
+
+    private static void writeSection(FileChannel channel, ByteBuffer buffer, IntBuffer section) throws IOException {
+        for (int i = 0; i < section.limit(); ++i) {
+            if (buffer.remaining() < 4) {
+                flush(channel, buffer);
+            }
+            buffer.putInt(section.get(i));
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -1,33 +1,34 @@
 package ctu.fel;
 
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
 
 public class Main {
 
-    static void writeToFile(Map<Integer, Set<Label>> paretoSets, String path) throws IOException {
-        FileWriter writer = new FileWriter(path);
-
-        writer.write("consumption,minSocAfter,minSocBefore,nodeId,time\n");
-
-        for (Map.Entry<Integer, Set<Label>> pair : paretoSets.entrySet()) {
-            TreeSet<Label> sortedSet = new TreeSet<>(pair.getValue());
-            for (Label lab : sortedSet) {
-                String line = lab.getConsumption() + "," + lab.getMaxSoCAfter() + "," + lab.getMinSoCBefore() + "," + lab.getNode() + "," + lab.getTime() + "\n";
-                writer.write(line);
-            }
-        }
-        writer.close();
-    }
-
     public static void main(String[] args) throws Exception {
-        Graph graph = new Graph("bayern_nodes.csv", "bayern_edges.csv", "bayern_goals.csv");
+        // The snapshot is created once by SnapshotConverter from the CSV files
+        Graph graph;
+        if (new File("bayern.graph").exists()) {
+            graph = new Graph("bayern.graph");
+        }
+        else {
+            graph = new Graph("bayern_nodes.csv", "bayern_edges.csv", "bayern_goals.csv");
+            SnapshotConverter.printParseRate(graph);
+        }
         Planner planner = new Planner();
-        KPC kpc = new KPC(graph, 32);
+
+        // The cover is built once and reloaded as long as the graph and the battery capacity stay the same
+        KPC kpc;
+        KpcStats kpcStats = new KpcStats();
+        try {
+            kpc = new KPC(graph, 32, "bayern_32.kpc", kpcStats);
+        }
+        catch (IOException e) {
+            System.out.println("Cover not loaded -- " + e.getMessage());
+            kpc = new KPC(graph, 32, Runtime.getRuntime().availableProcessors(), kpcStats);
+            kpc.save(graph, "bayern_32.kpc", true);
+        }
+        System.out.println(kpcStats);
 
 //        planner.setEllipseGoal(graph, 150000);
 //        planner.setEllipseCoefficient(0.1f);
@@ -36,8 +37,14 @@ public class Main {
 //        planner.setEpsilonCoefficients(new float[]{0.999f, 0.999f, 0.999f, 0.999f});
 //        System.out.println(planner.setEpsilonUsage(true));
 
-        Map<Integer, Set<Label>> paretoSets = planner.tKpcMls(graph, kpc, 100000);
-
-        writeToFile(paretoSets, "sets.csv");
+        // Labels are written while the search runs, a full queue of the stream pauses the search.
+        // ColumnarResultSink writes the compact binary format read by ColumnarResultReader instead.
+        KPC cover = kpc;
+        try (ResultSink sink = new CsvResultSink("sets.csv");
+             ResultStream stream = new ResultStream(4096, listener -> planner.tKpcMls(graph, cover, 100000, listener))) {
+            while (stream.hasNext()) {
+                sink.write(stream.next());
+            }
+        }
     }
 }
@@ -17,6 +17,10 @@ public class Node {
         this.longitudeProjected = lonProj;
     }
 
+    public int getElevation() {
+        return elevation;
+    }
+
     public float getLatitudeProjected() {
         return latitudeProjected;
     }
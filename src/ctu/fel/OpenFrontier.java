@@ -0,0 +1,187 @@
+package ctu.fel;
+
+import java.util.Arrays;
+
+/**
+ * Open labels of a node sorted by time, the parameters are kept in primitive arrays next to the label handles.
+ * A label can only be dominated by labels not slower than itself and only dominate labels not faster than itself,
+ * so the dominance scans cover a prefix and a suffix of the frontier given by a binary search on time.
+ * Dominance is standard, or epsilon dominance with the same float arithmetic as Planner if epsilons are given.
+ * The scans run on DominanceKernel, maxSoCAfter is therefore stored inverted.
+ */
+class OpenFrontier {
+    private int[] labels;
+    private int[] times;
+    private int[] minSoCBefore;
+    private int[] consumptions;
+    private int[] invertedMaxSoCAfter;
+    private int[] flags;
+    private int size;
+
+    OpenFrontier() {
+        this(4);
+    }
+
+    OpenFrontier(int capacity) {
+        capacity = Math.max(1, capacity);
+        labels = new int[capacity];
+        times = new int[capacity];
+        minSoCBefore = new int[capacity];
+        consumptions = new int[capacity];
+        invertedMaxSoCAfter = new int[capacity];
+        flags = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getLabel(int index) {
+        return labels[index];
+    }
+
+    /**
+     * @param parameters    parameters of a new label
+     * @param epsilons  epsilon coefficients, null for standard dominance
+     * @return  true if an open label dominates the new label
+     */
+    boolean isDominated(int[] parameters, float[] epsilons) {
+        int timeBound = parameters[0];
+        int minSoCBeforeBound = parameters[1];
+        int consumptionBound = parameters[2];
+        int maxSoCAfterBound = parameters[3];
+        if (epsilons != null) {
+            timeBound = Planner.maxScaledNotAbove(epsilons[0], parameters[0]);
+            minSoCBeforeBound = Planner.maxScaledNotAbove(epsilons[1], parameters[1]);
+            consumptionBound = Planner.maxScaledNotAbove(epsilons[2], parameters[2]);
+            maxSoCAfterBound = Planner.minNotBelow(parameters[3] * epsilons[3]);
+        }
+        return DominanceKernel.firstAtMost(times, minSoCBefore, consumptions, invertedMaxSoCAfter, 0,
+                upperBound(timeBound), timeBound, minSoCBeforeBound, consumptionBound, ~maxSoCAfterBound) >= 0;
+    }
+
+    /**
+     * Removes the open labels dominated by a new label in one pass over the frontier
+     * @param parameters    parameters of the new label
+     * @param epsilons  epsilon coefficients, null for standard dominance
+     * @param evicted   list the handles of the removed labels are added to
+     */
+    void removeDominated(int[] parameters, float[] epsilons, IntList evicted) {
+        int timeBound = parameters[0];
+        int minSoCBeforeBound = parameters[1];
+        int consumptionBound = parameters[2];
+        int maxSoCAfterBound = parameters[3];
+        if (epsilons != null) {
+            timeBound = Planner.minNotBelow(parameters[0] * epsilons[0]);
+            minSoCBeforeBound = Planner.minNotBelow(parameters[1] * epsilons[1]);
+            consumptionBound = Planner.minNotBelow(parameters[2] * epsilons[2]);
+            maxSoCAfterBound = Planner.maxScaledNotAbove(epsilons[3], parameters[3]);
+        }
+        int begin = lowerBound(timeBound);
+        if (DominanceKernel.flagAtLeast(times, minSoCBefore, consumptions, invertedMaxSoCAfter, begin, size, timeBound,
+                minSoCBeforeBound, consumptionBound, ~maxSoCAfterBound, flags) == 0) {
+            return;
+        }
+
+        int kept = begin;
+        for (int i = begin; i < size; ++i) {
+            if (flags[i] != 0) {
+                evicted.add(labels[i]);
+            }
+            else {
+                move(i, kept++);
+            }
+        }
+        size = kept;
+    }
+
+    /**
+     * Adds a label behind the labels of the same time
+     * @param label handle of the label
+     * @param parameters    parameters of the label
+     */
+    void add(int label, int[] parameters) {
+        if (size == labels.length) {
+            int capacity = 2 * size;
+            labels = Arrays.copyOf(labels, capacity);
+            times = Arrays.copyOf(times, capacity);
+            minSoCBefore = Arrays.copyOf(minSoCBefore, capacity);
+            consumptions = Arrays.copyOf(consumptions, capacity);
+            invertedMaxSoCAfter = Arrays.copyOf(invertedMaxSoCAfter, capacity);
+            flags = new int[capacity];
+        }
+        int position = upperBound(parameters[0]);
+        for (int i = size; i > position; --i) {
+            move(i - 1, i);
+        }
+        labels[position] = label;
+        times[position] = parameters[0];
+        minSoCBefore[position] = parameters[1];
+        consumptions[position] = parameters[2];
+        invertedMaxSoCAfter[position] = ~parameters[3];
+        size += 1;
+    }
+
+    /**
+     * Removes a label
+     * @param label handle of the label
+     * @param time  time of the label
+     * @return  true if the label was open, false otherwise
+     */
+    boolean remove(int label, int time) {
+        for (int i = lowerBound(time); i < size && times[i] == time; ++i) {
+            if (labels[i] == label) {
+                for (int j = i + 1; j < size; ++j) {
+                    move(j, j - 1);
+                }
+                size -= 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void move(int from, int to) {
+        labels[to] = labels[from];
+        times[to] = times[from];
+        minSoCBefore[to] = minSoCBefore[from];
+        consumptions[to] = consumptions[from];
+        invertedMaxSoCAfter[to] = invertedMaxSoCAfter[from];
+    }
+
+    /**
+     * @return  index of the first label with a time not below the given time
+     */
+    private int lowerBound(int time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] < time) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return  index of the first label with a time above the given time
+     */
+    private int upperBound(int time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] <= time) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
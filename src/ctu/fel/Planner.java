@@ -2,24 +2,75 @@ package ctu.fel;
 
 import com.sun.source.tree.Tree;
 
+import jdk.jfr.FlightRecorder;
+
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Planner {
 
     private boolean useEpsilonDominance = false;
     private float[] epsilons;
 
+    private boolean useGridDominance = false;
+    private float gridEpsilon;
+    private double gridScale;
+    private int gridSoCStep;
+
     private boolean useEllipsePruning = false;
     private float ellipseCoefficient = 0.5f;
-    private Node ellipseGoal;
-    private float ellipseDistance;
+    private int ellipseGoalId = -1;
+
+    // Bounds of the paths to the target for target pruning, null if target pruning is not used
+    private TargetBounds targetBounds;
+
+    private boolean verbose = false;
 
     static final boolean constrained = true;
     private static final int batteryCapacity = 40000000;
+    // Time coordinate of a packed grid cell, zero in the cells of closed labels
+    private static final long GRID_TIME_MASK = 0x7FFFL;
 
     private static int numPathParameters = 4;
     private static final boolean[] maximize = new boolean[] {false, false, false, true};
 
+    // Running searches sampled by SearchProgressEvent, searches are only added while the event is enabled
+    private static final Set<SearchState> sampledSearches = ConcurrentHashMap.newKeySet();
+
+    static {
+        FlightRecorder.addPeriodicEvent(SearchProgressEvent.class, Planner::emitSearchProgress);
+    }
+
+    Planner() {
+    }
+
+    /**
+     * Copies the configuration of another planner
+     * @param other planner to be copied
+     */
+    Planner(Planner other) {
+        useEpsilonDominance = other.useEpsilonDominance;
+        epsilons = other.epsilons == null ? null : other.epsilons.clone();
+        useGridDominance = other.useGridDominance;
+        gridEpsilon = other.gridEpsilon;
+        gridScale = other.gridScale;
+        gridSoCStep = other.gridSoCStep;
+        useEllipsePruning = other.useEllipsePruning;
+        ellipseCoefficient = other.ellipseCoefficient;
+        ellipseGoalId = other.ellipseGoalId;
+        targetBounds = other.targetBounds;
+        verbose = other.verbose;
+    }
+
+    /**
+     * Turn on or off the statistics prints of the searches, off by default. A verbose planner collects and prints
+     * the statistics of every query.
+     * @param verbose   usage boolean
+     */
+    void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
     /**
      * Set the goal for the ellipse heuristic
      * @param g graph instance to check if the node is available
@@ -30,7 +81,7 @@ public class Planner {
         if (node > g.getNumNodes()) {
             throw new Exception("Node " + node + " does not exist");
         }
-        ellipseGoal = g.getNode(node);
+        ellipseGoalId = node;
     }
 
     /**
@@ -73,19 +124,120 @@ public class Planner {
         return true;
     }
 
+    /**
+     * Turn on or off grid dominance. Every label is mapped to a cell of a grid with the ratio 1 + epsilon in time
+     * and the absolute step epsilon * batteryCapacity in minSoCBefore, consumption and maxSoCAfter.
+     * The occupied cells are the only labels kept by a node of the search, a new label is discarded by hash lookups
+     * if its cell, or a cell lower by one in any subset of the costs, is occupied, and no other dominance check is run.
+     * Closed labels are not slower than the labels generated later, so they also occupy their cell with time zero.
+     * A discarded label is thus not better than the label of the cell by more than one step in any criterion.
+     * Goal labels dominated by a closed label of their node are dropped, so the returned sets stay Pareto sets.
+     * @param use usage boolean
+     * @return true if the grid epsilon is set and the value is adopted, false otherwise
+     */
+    boolean setGridUsage(boolean use) {
+        if (use && gridEpsilon == 0) {
+            return false;
+        }
+        useGridDominance = use;
+        return true;
+    }
+
+    /**
+     * Set the epsilon of the grid dominance
+     * @param epsilon   grid epsilon in [0.001, 1)
+     * @return true if epsilon is valid, false if not
+     */
+    boolean setGridEpsilon(float epsilon) {
+        if (epsilon < 0.001f || epsilon >= 1) {
+            return false;
+        }
+        gridEpsilon = epsilon;
+        gridScale = 1 / Math.log1p(epsilon);
+        gridSoCStep = Math.max(1, (int) (epsilon * batteryCapacity));
+        return true;
+    }
+
     /**
      * Turn on or off ellipse heuristic
      * @param use usage setting
      * @return true if the goal is set and the value is adopted, false otherwise
      */
     boolean setEllipseUsage(boolean use) {
-        if (ellipseGoal == null) {
+        if (ellipseGoalId < 0) {
             return false;
         }
         useEllipsePruning = use;
         return true;
     }
 
+    /**
+     * Turn on or off exact target pruning towards the ellipse goal. The bounds are computed by reverse searches
+     * from the goal, see ReverseSearchBounds. A label is discarded if a label closed at the goal dominates its
+     * parameters extended by the bounds of its node, which keeps every Pareto optimal route to the goal.
+     * The searches then only return the Pareto set of the goal.
+     * @param graph graph the searches run on
+     * @param use usage setting
+     * @return true if the goal is set and the value is adopted, false otherwise
+     */
+    boolean setTargetPruning(Graph graph, boolean use) {
+        if (!use) {
+            targetBounds = null;
+            return true;
+        }
+        if (ellipseGoalId < 0) {
+            return false;
+        }
+        targetBounds = new ReverseSearchBounds(graph, ellipseGoalId);
+        return true;
+    }
+
+    /**
+     * Turn on or off target pruning towards the ellipse goal with precomputed landmark bounds, which need
+     * no search at query time but are weaker than the bounds of setTargetPruning()
+     * @param landmarks landmarks of the graph the searches run on
+     * @param use usage setting
+     * @return true if the goal is set and the value is adopted, false otherwise
+     */
+    boolean setLandmarkPruning(Landmarks landmarks, boolean use) {
+        if (!use) {
+            targetBounds = null;
+            return true;
+        }
+        if (ellipseGoalId < 0) {
+            return false;
+        }
+        targetBounds = landmarks.getBounds(ellipseGoalId);
+        return true;
+    }
+
+    /**
+     * Turn on or off target pruning towards the ellipse goal with the physical bounds from the node elevations
+     * and coordinates, which need neither a search nor preprocessing
+     * @param elevationBounds   bounds verified against the graph the searches run on
+     * @param use usage setting
+     * @return true if the goal is set and the value is adopted, false otherwise
+     */
+    boolean setElevationPruning(ElevationBounds elevationBounds, boolean use) {
+        if (!use) {
+            targetBounds = null;
+            return true;
+        }
+        if (ellipseGoalId < 0) {
+            return false;
+        }
+        targetBounds = elevationBounds.getBounds(ellipseGoalId);
+        return true;
+    }
+
+    /**
+     * Set the bounds used for target pruning, the target is the target of the bounds
+     * @param bounds    bounds of the paths to the target, null to turn target pruning off
+     */
+    void setTargetBounds(TargetBounds bounds) {
+        targetBounds = bounds;
+    }
+
     /**
      * Set the distance coefficient for ellipse pruning
      * @param coefficient coefficient value
@@ -99,14 +251,33 @@ public class Planner {
         return true;
     }
 
-    private float getDistance(Node n1, Node n2) {
-        return (float)Math.sqrt(Math.pow(n2.getLatitudeProjected() - n1.getLatitudeProjected(), 2) +
-                Math.pow(n2.getLongitudeProjected() - n1.getLongitudeProjected(), 2));
+    private static float getDistance(float latitude1, float longitude1, float latitude2, float longitude2) {
+        double latitudeDifference = latitude2 - latitude1;
+        double longitudeDifference = longitude2 - longitude1;
+        return (float) Math.sqrt(latitudeDifference * latitudeDifference + longitudeDifference * longitudeDifference);
+    }
+
+    /**
+     * Sets up the ellipse of a search from the projected coordinates of its source and of the ellipse goal
+     * @param graph the graph the search runs on
+     * @param source    the node id of the search source
+     * @param state state of the search
+     */
+    private void initEllipse(Graph graph, int source, SearchState state) {
+        state.sourceLatitude = graph.getLatitudeProjected(source);
+        state.sourceLongitude = graph.getLongitudeProjected(source);
+        state.goalLatitude = graph.getLatitudeProjected(ellipseGoalId);
+        state.goalLongitude = graph.getLongitudeProjected(ellipseGoalId);
+        float goalDistance = getDistance(state.sourceLatitude, state.sourceLongitude, state.goalLatitude,
+                state.goalLongitude);
+        state.ellipseBound = goalDistance + 2 * (goalDistance * ellipseCoefficient);
     }
 
-    private boolean isInEllipse(Node source, Node currentNode) {
-        return (getDistance(source, currentNode) + getDistance(currentNode, ellipseGoal) <=
-                getDistance(source, ellipseGoal) + 2 * ellipseDistance);
+    private static boolean isInEllipse(Graph graph, SearchState state, int node) {
+        float latitude = graph.getLatitudeProjected(node);
+        float longitude = graph.getLongitudeProjected(node);
+        return getDistance(state.sourceLatitude, state.sourceLongitude, latitude, longitude) +
+                getDistance(latitude, longitude, state.goalLatitude, state.goalLongitude) <= state.ellipseBound;
     }
 
     static int getBatteryCapacity(){
@@ -127,29 +298,30 @@ public class Planner {
      * @return  true if the path is infeasible, false otherwise
      */
     static boolean infeasiblePath(Path path) {
-        return path.getMinSoCBefore() > batteryCapacity || path.getMaxSoCAfter() < 0;
+        return infeasiblePath(path.getMinSoCBefore(), path.getMaxSoCAfter());
+    }
+
+    static boolean infeasiblePath(int minSoCBefore, int maxSoCAfter) {
+        return minSoCBefore > batteryCapacity || maxSoCAfter < 0;
     }
 
     /**
      * Main function for dominance check
      * Employs standard dominance or epsilon dominance depending on the variable useEpsilonDominance
-     * @param l1    path to dominate
-     * @param l2    path to be dominated
-     * @return      true if l1 dominates l2, false otherwise
+     * @param p1Parameters  parameters of the path to dominate
+     * @param p2Parameters  parameters of the path to be dominated
+     * @return      true if the first path dominates the second one, false otherwise
      */
-    private boolean dominates(Label l1, Label l2) {
+    private boolean dominates(int[] p1Parameters, int[] p2Parameters) {
         if (useEpsilonDominance) {
-            return epsilonDominanceCheck(l1, l2);
+            return epsilonDominanceCheck(p1Parameters, p2Parameters);
         }
         else {
-            return dominanceCheck(l1, l2);
+            return dominanceCheck(p1Parameters, 0, p2Parameters, 0);
         }
     }
 
-    private boolean epsilonDominanceCheck(Label l1, Label l2) {
-        int[] l1Parameters = l1.getParameters();
-        int[] l2Parameters = l2.getParameters();
-
+    private boolean epsilonDominanceCheck(int[] l1Parameters, int[] l2Parameters) {
         for (int p = 0; p < numPathParameters; ++p) {
             if (maximize[p]) {
                 if (l1Parameters[p] < l2Parameters[p] * epsilons[p]) {
@@ -165,77 +337,71 @@ public class Planner {
         return true;
     }
 
-    public static boolean dominanceCheck(Path p1, Path p2) {
-        int[] p1Parameters = p1.getParameters();
-        int[] p2Parameters = p2.getParameters();
-
-        for (int p = 0; p < numPathParameters; ++p) {
-            if (maximize[p]) {
-                if (p1Parameters[p] < p2Parameters[p]) {
-                    return false;
-                }
+    /**
+     * Epsilon dominance compares values scaled in float arithmetic, the comparison is monotone in the value,
+     * which gives an integer bound of the values passing it
+     * @return  the maximal int t with t * epsilon <= bound in float arithmetic
+     */
+    static int maxScaledNotAbove(float epsilon, int bound) {
+        long low = Integer.MIN_VALUE;
+        long high = Integer.MAX_VALUE;
+        if (!((int) low * epsilon <= bound)) {
+            return Integer.MIN_VALUE;
+        }
+        while (low < high) {
+            long middle = (low + high + 1) >> 1;
+            if ((int) middle * epsilon <= bound) {
+                low = middle;
             }
             else {
-                if (p1Parameters[p] > p2Parameters[p]) {
-                    return false;
-                }
+                high = middle - 1;
             }
         }
-        return true;
+        return (int) low;
     }
 
     /**
-     * Main function for t-discarding
-     * Employs standard dominance or epsilon dominance depending on the variable useEpsilonDominance
-     * @param tSet  tSet of the node in consideration
-     * @param newLabel  the label to be dominated
-     * @return  true if tSet dominates newLabel, false otherwise
+     * @return  the minimal int t with t >= bound in float arithmetic
      */
-    private boolean tDiscards(TreeSet<Integer[]> tSet, Label newLabel) {
-        if (useEpsilonDominance) {
-            for (Integer[] t : tSet) {
-                if (epsilonTDominanceCheck(t, newLabel)) {
-                    return true;
-                }
-            }
+    static int minNotBelow(float bound) {
+        long low = Integer.MIN_VALUE;
+        long high = Integer.MAX_VALUE;
+        if (!((int) high >= bound)) {
+            return Integer.MAX_VALUE;
         }
-        else {
-            for (Integer[] t : tSet) {
-                if (tDominanceCheck(t, newLabel)) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    private boolean epsilonTDominanceCheck(Integer[] t, Label newLabel) {
-        int[] parameters = newLabel.getParameters();
-        for (int i = 0; i < t.length; ++i) {
-            if (maximize[i + 1]) {
-                if (t[i] < parameters[i + 1] * epsilons[i + 1]) {
-                    return false;
-                }
+        while (low < high) {
+            long middle = (low + high) >> 1;
+            if ((int) middle >= bound) {
+                high = middle;
             }
             else {
-                if (t[i] * epsilons[i + 1] > parameters[i + 1]) {
-                    return false;
-                }
+                low = middle + 1;
             }
         }
-        return true;
+        return (int) low;
+    }
+
+    public static boolean dominanceCheck(Path p1, Path p2) {
+        return dominanceCheck(p1.getParameters(), 0, p2.getParameters(), 0);
     }
 
-    private boolean tDominanceCheck(Integer[] t, Label newLabel) {
-        int[] parameters = newLabel.getParameters();
-        for (int i = 0; i < t.length; ++i) {
-            if (maximize[i + 1]) {
-                if (t[i] < parameters[i + 1]) {
+    /**
+     * Dominance check of parameter vectors stored in larger arrays
+     * @param p1Parameters  array holding the dominating vector
+     * @param p1Offset  index of the first parameter of the dominating vector
+     * @param p2Parameters  array holding the dominated vector
+     * @param p2Offset  index of the first parameter of the dominated vector
+     * @return  true if the first vector dominates the second one, false otherwise
+     */
+    static boolean dominanceCheck(int[] p1Parameters, int p1Offset, int[] p2Parameters, int p2Offset) {
+        for (int p = 0; p < numPathParameters; ++p) {
+            if (maximize[p]) {
+                if (p1Parameters[p1Offset + p] < p2Parameters[p2Offset + p]) {
                     return false;
                 }
             }
             else {
-                if (t[i] > parameters[i + 1]) {
+                if (p1Parameters[p1Offset + p] > p2Parameters[p2Offset + p]) {
                     return false;
                 }
             }
@@ -244,180 +410,194 @@ public class Planner {
     }
 
     /**
-     * When a new closed label is produced, this function updates the tSet of the corresponding node
-     * @param tSet  tSet to be updated
-     * @param newLabel  the label to be added
+     * Main function for t-discarding
+     * Employs standard dominance or epsilon dominance depending on the variable useEpsilonDominance
+     * @param tSet  tSet of the node in consideration, null if the node has no closed label
+     * @param parameters  parameters of the label to be dominated
+     * @return  true if tSet dominates the label, false otherwise
      */
-    private void updateTSet(TreeSet<Integer[]> tSet, Label newLabel) {
-        // Extract new tVector
-        int[] newTVector = Arrays.copyOfRange(newLabel.getParameters(), 1, numPathParameters);
-
-        // Remove newly dominated entries
-        Integer[] tVectorCopy = Arrays.stream(newTVector).boxed().toArray( Integer[]::new );
-        TreeSet<Integer[]> toExamine = (TreeSet<Integer[]>) tSet.tailSet(tVectorCopy);
-        List<Integer[]> toRemove = new LinkedList<>();
-        for (Integer[] current : toExamine) {
-            boolean dominates = true;
-            for (int i = 0; i < tVectorCopy.length; ++i) {
-                if (maximize[i + 1]) {
-                    if (tVectorCopy[i] < current[i]) {
-                        dominates = false;
-                        break;
-                    }
-                }
-                else {
-                    if (tVectorCopy[i] > current[i]) {
-                        dominates = false;
-                        break;
-                    }
-                }
-            }
-            if (dominates) {
-                toRemove.add(current);
-            }
+    private boolean tDiscards(TSet tSet, int[] parameters) {
+        if (tSet == null) {
+            return false;
         }
-
-        for (Integer[] current : toRemove) {
-            tSet.remove(current);
+        if (useEpsilonDominance) {
+            return tSet.epsilonDominates(parameters[1], parameters[2], parameters[3], epsilons);
+        }
+        else {
+            return tSet.dominates(parameters[1], parameters[2], parameters[3]);
         }
-        tSet.add(tVectorCopy);
     }
 
-    private int[] buildSimpleTimeSoC(Edge e) {
-        return new int[] {e.getTime(), Math.max(0, e.getConsumption()), e.getConsumption(), Math.min(batteryCapacity, batteryCapacity - e.getConsumption())};
+    /**
+     * Link a graph edge to a path and calculate the combined parameters
+     * @param currentParameters  parameters of the path to be augmented
+     * @param time  time of the edge
+     * @param consumption   consumption of the edge
+     * @param newParameters array to store the parameters of the connected path to
+     */
+    private static void linkEdge(int[] currentParameters, int time, int consumption, int[] newParameters) {
+        linkPaths(currentParameters, time, Math.max(0, consumption), consumption,
+                Math.min(batteryCapacity, batteryCapacity - consumption), newParameters);
     }
 
     /**
-     * Link a suffix segment to a path and calculate the combined parameters
-     * @param currentLabel  path to be augmented
-     * @param suffixObject  segment to be connected to the path (can be either Edge or CoverEdge)
-     * @return  the parameter array of the connected path
+     * Link a cover edge to a path and calculate the combined parameters
+     * @param currentParameters  parameters of the path to be augmented
+     * @param kpc   the KPC cover holding the cover edge
+     * @param coverEdge index of the cover edge to be connected to the path
+     * @param newParameters array to store the parameters of the connected path to
      */
-    private int[] linkPaths(Label currentLabel, Object suffixObject) {
-        int[] suffixParameters;
-        if (suffixObject instanceof Edge) {
-            suffixParameters = buildSimpleTimeSoC((Edge) suffixObject);
-        }
-        else {
-            suffixParameters = ((CoverEdge) suffixObject).getParameters();
-        }
-        int[] newParameters = new int[numPathParameters];
+    private static void linkCoverEdge(int[] currentParameters, KPC kpc, int coverEdge, int[] newParameters) {
+        linkPaths(currentParameters, kpc.getCoverEdgeTime(coverEdge), kpc.getCoverEdgeMinSoCBefore(coverEdge),
+                kpc.getCoverEdgeConsumption(coverEdge), kpc.getCoverEdgeMaxSoCAfter(coverEdge), newParameters);
+    }
 
+    /**
+     * Link a suffix segment given by its parameters to a path and calculate the combined parameters
+     * @param currentParameters  parameters of the path to be augmented
+     * @param time  time of the suffix
+     * @param minSoCBefore  minimal SoC required before the suffix
+     * @param consumption   consumption of the suffix
+     * @param maxSoCAfter   maximal SoC after the suffix
+     * @param newParameters array to store the parameters of the connected path to
+     */
+    static void linkPaths(int[] currentParameters, int time, int minSoCBefore, int consumption, int maxSoCAfter,
+                          int[] newParameters) {
         // Path Parameter Update function
-        newParameters[0] = currentLabel.getTime() + suffixParameters[0];       // time
-        newParameters[1] = Math.max(currentLabel.getMinSoCBefore(), currentLabel.getConsumption() + suffixParameters[1]);    // minSoCBefore
-        newParameters[2] = Math.max(currentLabel.getConsumption() + suffixParameters[2], currentLabel.getMinSoCBefore() -
-                suffixParameters[3]);            // consumption
-        newParameters[3] = Math.min(currentLabel.getMaxSoCAfter() - suffixParameters[2], suffixParameters[3]);             // maxSoCAfter
-
-        return newParameters;
+        newParameters[0] = currentParameters[0] + time;       // time
+        newParameters[1] = Math.max(currentParameters[1], currentParameters[2] + minSoCBefore);    // minSoCBefore
+        newParameters[2] = Math.max(currentParameters[2] + consumption, currentParameters[1] -
+                maxSoCAfter);            // consumption
+        newParameters[3] = Math.min(currentParameters[3] - consumption, maxSoCAfter);             // maxSoCAfter
     }
 
     /**
-     * Standard MLS algorithm
-     * @param graph graph to run the search on
-     * @param source    the node id of the search source
-     * @return  the map of Pareto sets of the goal nodes defined in graph
+     * Context of a running search, holds all its mutable state, so that a planner can run searches concurrently.
+     * Labels are stored in the arena, the queue and the per node open and closed lists hold label handles.
+     * Lists of a node are allocated when the node is first reached.
      */
-    Map<Integer, Set<Label>> mls(Graph graph, int source) {
-        long startTime = System.nanoTime();
-
-        int numNodes = graph.getNumNodes();
-
-        Node sourceNode = graph.getNode(source);
-        if (useEllipsePruning) {
-            ellipseDistance = getDistance(sourceNode, ellipseGoal) * ellipseCoefficient;
+    private static class SearchState {
+        // Projected coordinates of the source and the goal of ellipse pruning and the bound of the distance sum
+        private float sourceLatitude;
+        private float sourceLongitude;
+        private float goalLatitude;
+        private float goalLongitude;
+        private float ellipseBound;
+
+        private final LabelArena arena;
+        // Routes of the labels passed out of the search
+        private final RouteTree routes;
+        private final OpenFrontier[] openLabels;
+        private final IntList[] closedLabels;
+        // tSets summarizing the closed labels, null if t-discarding is not used
+        private final TSet[] tSets;
+        // Occupied grid cells of the nodes, null if grid dominance is not used
+        private final GridCells[] gridCells;
+        private final LabelQueue toExpand;
+        // Closed labels of the target sorted by time, null if target pruning is not used
+        private OpenFrontier targetLabels;
+        private int target = -1;
+
+        private final int[] currentParameters = new int[numPathParameters];
+        private final int[] newParameters = new int[numPathParameters];
+        private final int[] labelParameters = new int[numPathParameters];
+        private final int[] optimisticParameters = new int[numPathParameters];
+        private final IntList toRemove = new IntList();
+        // Statistics of the search, null if they are not collected
+        private SearchStats stats;
+        // Source, variant and number of closed labels, read by SearchProgressEvent and the statistics
+        private int source;
+        private String variant;
+        private long numSettled;
+
+        SearchState(int numNodes, KPC kpc, boolean tDiscarding, boolean gridDominance) {
+            arena = new LabelArena();
+            routes = new RouteTree(kpc);
+            gridCells = gridDominance ? new GridCells[numNodes] : null;
+            openLabels = new OpenFrontier[numNodes];
+            closedLabels = new IntList[numNodes];
+            tSets = tDiscarding && !gridDominance ? new TSet[numNodes] : null;
+            toExpand = new LabelQueue(arena);
         }
 
-        List<Set<Label>> closedLabels = new ArrayList<>(numNodes);
-        List<Set<Label>> openLabels = new ArrayList<>(numNodes);
-
-        for (int i = 0; i < numNodes; ++i) {
-            closedLabels.add(new HashSet<>());
-            openLabels.add(new HashSet<>());
+        OpenFrontier getOpenLabels(int node) {
+            if (openLabels[node] == null) {
+                openLabels[node] = new OpenFrontier();
+            }
+            return openLabels[node];
         }
 
-        TreeSet<Label> toExpand = new TreeSet<>();
-        toExpand.add(new Label(source, getInitialPathParameters()));
-
-        int numIterations = 0;
-
-        while (!toExpand.isEmpty()) {
-            Label currentLabel = toExpand.pollFirst();
-            int currentNode = currentLabel.getNode();
-
-            if (numIterations % 100000 == 0) {
-                System.out.println(toExpand.size());
+        GridCells getGridCells(int node) {
+            if (gridCells[node] == null) {
+                gridCells[node] = new GridCells();
             }
-            numIterations += 1;
-
-            openLabels.get(currentNode).remove(currentLabel);
-            closedLabels.get(currentNode).add(currentLabel);
-
-            for (Edge nextEdge : graph.getOutgoingEdges(currentNode)) {
-                int nextNode = nextEdge.getEndPoint();
-                // Ellipse pruning
-                if (useEllipsePruning && !isInEllipse(sourceNode, graph.getNode(nextNode))) {
-                    continue;
-                }
-
-                Label newLabel = new Label(nextNode, linkPaths(currentLabel, nextEdge));
-
-                // Infeasible path
-                if (constrained && infeasiblePath(newLabel)) {
-                    continue;
-                }
-
-                boolean isDominated = false;
-
-                // Dominance by closed labels
-                Set<Label> currentClosedLabels = closedLabels.get(nextNode);
-                for (Label closed : currentClosedLabels) {
-                    if (dominates(closed, newLabel)) {
-                        isDominated = true;
-                        break;
-                    }
-                }
-                if (isDominated) {
-                    continue;
-                }
+            return gridCells[node];
+        }
 
-                // Dominance by and of open labels
-                List<Label> toRemove = new ArrayList<>();
-                Set<Label> currentOpenLabels = openLabels.get(nextNode);
-                for (Label open : currentOpenLabels) {
-                    if (dominates(open, newLabel)) {
-                        isDominated = true;
-                        break;
-                    }
-                    else if (dominates(newLabel, open)) {
-                        toRemove.add(open);
-                    }
-                }
-                if (isDominated) {
-                    continue;
-                }
+        IntList getClosedLabels(int node) {
+            if (closedLabels[node] == null) {
+                closedLabels[node] = new IntList(4);
+            }
+            return closedLabels[node];
+        }
 
-                // Remove dominated labels
-                for (Label label : toRemove) {
-                    currentOpenLabels.remove(label);
-                    toExpand.remove(label);
-                }
+        /**
+         * Keeps the closed labels of the target in a frontier for the target pruning tests
+         * @param target    target of the pruning
+         */
+        void setTarget(int target) {
+            this.target = target;
+            targetLabels = new OpenFrontier();
+        }
 
-                toExpand.add(newLabel);
-                currentOpenLabels.add(newLabel);
+        /**
+         * Moves an open label to the closed labels of its node
+         * @param label handle of the label
+         * @param node  node of the label
+         * @param parameters    parameters of the label
+         */
+        void close(int label, int node, int[] parameters) {
+            // With grid dominance only the labels of connectSourceToKpc are in the open frontiers
+            if (openLabels[node] != null) {
+                openLabels[node].remove(label, parameters[0]);
+            }
+            getClosedLabels(node).add(label);
+            numSettled += 1;
+            if (node == target) {
+                targetLabels.add(label, parameters);
             }
         }
-        Map<Integer, Set<Label>> paretoSets = new HashMap<>();
-        for (int nodeIndex : graph.getGoals()) {
-            paretoSets.put(nodeIndex, closedLabels.get(nodeIndex));
-        }
+    }
 
-        long endTime = System.nanoTime();
-        long  queryDuration = ((endTime - startTime) / 1000000000);
-        System.out.println("Query duration -- " + queryDuration);
+    /**
+     * Standard MLS algorithm
+     * @param graph graph to run the search on
+     * @param source    the node id of the search source
+     * @return  the map of Pareto sets of the goal nodes defined in graph
+     */
+    Map<Integer, Set<Label>> mls(Graph graph, int source) {
+        return search(graph, null, source, false, null, null);
+    }
 
-        return paretoSets;
+    /**
+     * Standard MLS algorithm reporting the goal labels as they are closed
+     * @param graph graph to run the search on
+     * @param source    the node id of the search source
+     * @param listener  listener receiving the closed labels of the goal nodes
+     */
+    void mls(Graph graph, int source, LabelListener listener) {
+        search(graph, null, source, false, listener, null);
+    }
+
+    /**
+     * Standard MLS algorithm collecting statistics
+     * @param graph graph to run the search on
+     * @param source    the node id of the search source
+     * @param stats statistics to be filled by the search
+     * @return  the map of Pareto sets of the goal nodes defined in graph
+     */
+    Map<Integer, Set<Label>> mls(Graph graph, int source, SearchStats stats) {
+        return search(graph, null, source, false, null, stats);
     }
 
     /**
@@ -427,471 +607,705 @@ public class Planner {
      * @return  the map of Pareto sets of the goal nodes defined in graph
      */
     Map<Integer, Set<Label>> tMls(Graph graph, int source) {
-        long startTime = System.nanoTime();
-
-        int numNodes = graph.getNumNodes();
-
-        Node sourceNode = graph.getNode(source);
-        if (useEllipsePruning) {
-            ellipseDistance = getDistance(sourceNode, ellipseGoal) * ellipseCoefficient;
-        }
-
-        List<Set<Label>> closedLabels = new ArrayList<>(numNodes);
-        List<Set<Label>> openLabels = new ArrayList<>(numNodes);
-        // Arrays for tDiscarding
-        List<TreeSet<Integer[]>> tSets = new ArrayList<>(numNodes);
-//        int[] maxFirstParameter = new int[numNodes];
-
-        for (int i = 0; i < numNodes; ++i) {
-            closedLabels.add(new HashSet<>());
-            openLabels.add(new HashSet<>());
-            tSets.add(new TreeSet<>((integers, t1) -> {
-                for (int t = 0; t < integers.length; ++t) {
-                    if (integers[t] != t1[t]) {
-                        if (maximize[t + 1]) {
-                            return Integer.compare(t1[t], integers[t]);
-                        }
-                        else {
-                            return Integer.compare(integers[t], t1[t]);
-                        }
-                    }
-                }
-                return 0;
-            }));
-//            maxFirstParameter[i] = 0;
-        }
-
-        TreeSet<Label> toExpand = new TreeSet<>();
-        toExpand.add(new Label(source, getInitialPathParameters()));
-
-        int numIterations = 0;
-
-        while (!toExpand.isEmpty()) {
-            Label currentLabel = toExpand.pollFirst();
-            int currentNode = currentLabel.getNode();
-
-            if (numIterations % 100000 == 0) {
-                System.out.println(toExpand.size());
-            }
-            numIterations += 1;
-
-            openLabels.get(currentNode).remove(currentLabel);
-            closedLabels.get(currentNode).add(currentLabel);
-            updateTSet(tSets.get(currentNode), currentLabel);
-
-            // Update maximum value of the first parameter
-//            if (maxFirstParameter[currentNode] < currentLabel.getTime())
-//                maxFirstParameter[currentNode] = currentLabel.getTime();
-
-            for (Edge nextEdge : graph.getOutgoingEdges(currentNode)) {
-                int nextNode = nextEdge.getEndPoint();
-                // Ellipse pruning
-                if (useEllipsePruning && !isInEllipse(sourceNode, graph.getNode(nextNode))) {
-                    continue;
-                }
-
-                Label newLabel = new Label(nextNode, linkPaths(currentLabel, nextEdge));
-
-                // Infeasible path
-                if (constrained && infeasiblePath(newLabel)) {
-                    continue;
-                }
+        return search(graph, null, source, true, null, null);
+    }
 
-                boolean isDominated = false;
+    /**
+     * MLS with t-discarding procedure reporting the goal labels as they are closed
+     * @param graph graph to run the search on
+     * @param source    the node id of the search source
+     * @param listener  listener receiving the closed labels of the goal nodes
+     */
+    void tMls(Graph graph, int source, LabelListener listener) {
+        search(graph, null, source, true, listener, null);
+    }
 
-                // tDiscarding by closed labels
-                if (tDiscards(tSets.get(nextNode), newLabel)) {
-                    continue;
-                }
+    /**
+     * MLS with t-discarding procedure collecting statistics
+     * @param graph graph to run the search on
+     * @param source    the node id of the search source
+     * @param stats statistics to be filled by the search
+     * @return  the map of Pareto sets of the goal nodes defined in graph
+     */
+    Map<Integer, Set<Label>> tMls(Graph graph, int source, SearchStats stats) {
+        return search(graph, null, source, true, null, stats);
+    }
 
-                // Dominance by and of open labels
-                List<Label> toRemove = new ArrayList<>();
-                Set<Label> currentOpenLabels = openLabels.get(nextNode);
-                for (Label open : currentOpenLabels) {
-                    if (dominates(open, newLabel)) {
-                        isDominated = true;
-                        break;
-                    }
-                    else if (dominates(newLabel, open)) {
-                        toRemove.add(open);
-                    }
-                }
-                if (isDominated) {
-                    continue;
-                }
+    /**
+     * MLS on a kPC cover of the graph
+     * @param graph the graph to run the search on
+     * @param kpc   the KPC cover of the graph
+     * @param source    the node id of the search source
+     * @return  the map of Pareto sets of the goal nodes defined in graph
+     */
+    Map<Integer, Set<Label>> kpcMls(Graph graph, KPC kpc, int source) {
+        return search(graph, kpc, source, false, null, null);
+    }
 
-                // Remove dominated labels
-                for (Label label : toRemove) {
-                    currentOpenLabels.remove(label);
-                    toExpand.remove(label);
-                }
+    /**
+     * MLS on a kPC cover of the graph reporting the goal labels as they are closed
+     * @param graph the graph to run the search on
+     * @param kpc   the KPC cover of the graph
+     * @param source    the node id of the search source
+     * @param listener  listener receiving the closed labels of the goal nodes
+     */
+    void kpcMls(Graph graph, KPC kpc, int source, LabelListener listener) {
+        search(graph, kpc, source, false, listener, null);
+    }
 
-                toExpand.add(newLabel);
-                currentOpenLabels.add(newLabel);
-            }
-        }
-        Map<Integer, Set<Label>> paretoSets = new HashMap<>();
-        for (int nodeIndex : graph.getGoals()) {
-            paretoSets.put(nodeIndex, closedLabels.get(nodeIndex));
-        }
+    /**
+     * MLS on a kPC cover of the graph collecting statistics
+     * @param graph the graph to run the search on
+     * @param kpc   the KPC cover of the graph
+     * @param source    the node id of the search source
+     * @param stats statistics to be filled by the search
+     * @return  the map of Pareto sets of the goal nodes defined in graph
+     */
+    Map<Integer, Set<Label>> kpcMls(Graph graph, KPC kpc, int source, SearchStats stats) {
+        return search(graph, kpc, source, false, null, stats);
+    }
 
-        long endTime = System.nanoTime();
-        long  queryDuration = ((endTime - startTime) / 1000000000);
-        System.out.println("Query duration -- " + queryDuration);
+    /**
+     * MLS on a kPC cover with t-discarding
+     * @param graph the graph to run the search on
+     * @param kpc   the KPC cover of the graph
+     * @param source    the node id of the search source
+     * @return  the map of Pareto sets of the goal nodes defined in graph
+     */
+    Map<Integer, Set<Label>> tKpcMls(Graph graph, KPC kpc, int source) {
+        return search(graph, kpc, source, true, null, null);
+    }
 
-        return paretoSets;
+    /**
+     * MLS on a kPC cover with t-discarding reporting the goal labels as they are closed
+     * @param graph the graph to run the search on
+     * @param kpc   the KPC cover of the graph
+     * @param source    the node id of the search source
+     * @param listener  listener receiving the closed labels of the goal nodes
+     */
+    void tKpcMls(Graph graph, KPC kpc, int source, LabelListener listener) {
+        search(graph, kpc, source, true, listener, null);
     }
 
     /**
-     * MLS on a kPC cover of the graph
+     * MLS on a kPC cover with t-discarding collecting statistics
      * @param graph the graph to run the search on
      * @param kpc   the KPC cover of the graph
      * @param source    the node id of the search source
+     * @param stats statistics to be filled by the search
      * @return  the map of Pareto sets of the goal nodes defined in graph
      */
-    Map<Integer, Set<Label>> kpcMls(Graph graph, KPC kpc, int source) {
-        long startTime = System.nanoTime();
+    Map<Integer, Set<Label>> tKpcMls(Graph graph, KPC kpc, int source, SearchStats stats) {
+        return search(graph, kpc, source, true, null, stats);
+    }
 
-        int numNodes = graph.getNumNodes();
+    /**
+     * Label-setting search shared by the MLS variants
+     * @param graph the graph to run the search on
+     * @param kpc   the KPC cover to run the search on, null to search the graph itself
+     * @param source    the node id of the search source
+     * @param tDiscarding   true if new labels are discarded by the tSets of closed labels
+     * @param listener  listener receiving the closed labels of the goal nodes, null if not used
+     * @param stats statistics to be filled, null if not collected unless the planner is verbose
+     * @return  the map of Pareto sets of the goal nodes defined in graph
+     */
+    private Map<Integer, Set<Label>> search(Graph graph, KPC kpc, int source, boolean tDiscarding,
+                                            LabelListener listener, SearchStats stats) {
+        QueryEvent queryEvent = new QueryEvent();
+        queryEvent.begin();
+        if (stats == null && verbose) {
+            stats = new SearchStats();
+        }
+        long phaseStart = stats == null ? 0 : System.nanoTime();
+        checkTargetInCover(kpc);
 
-        Node sourceNode = graph.getNode(source);
+        SearchState state = new SearchState(graph.getNumNodes(), kpc, tDiscarding, useGridDominance);
+        if (targetBounds != null) {
+            state.setTarget(targetBounds.getTarget());
+        }
+        state.stats = stats;
+        state.source = source;
+        state.variant = kpc == null ? (tDiscarding ? "T_MLS" : "MLS") : (tDiscarding ? "T_KPC_MLS" : "KPC_MLS");
         if (useEllipsePruning) {
-            ellipseDistance = getDistance(sourceNode, ellipseGoal) * ellipseCoefficient;
+            initEllipse(graph, source, state);
+        }
+        if (stats != null) {
+            long now = System.nanoTime();
+            stats.setupNanos = now - phaseStart;
+            phaseStart = now;
         }
 
-        Map<Integer, Set<Label>> closedLabels = new HashMap<>(kpc.getNumCoverNodes());
-        Map<Integer, Set<Label>> openLabels = new HashMap<>(kpc.getNumCoverNodes());
-
-        for (int i = 0; i < numNodes; ++i) {
-            if (kpc.inCover(i)) {
-                closedLabels.put(i, new HashSet<>());
-                openLabels.put(i, new HashSet<>());
+        boolean sampled = startSampling(state);
+        try {
+            if (kpc == null) {
+                state.toExpand.add(state.arena.add(source, getInitialPathParameters(), 0, LabelArena.NO_PARENT,
+                        LabelArena.NO_COVER_EDGE));
+            }
+            else {
+                connectSourceToKpc(graph, kpc, source, state);
+                reportClosedGoals(graph, state, listener);
+                if (stats != null) {
+                    long now = System.nanoTime();
+                    stats.connectNanos = now - phaseStart;
+                    phaseStart = now;
+                }
+            }
+            expandLabels(graph, kpc, state, listener);
+        }
+        finally {
+            if (sampled) {
+                sampledSearches.remove(state);
             }
         }
 
-        TreeSet<Label> toExpand = connectSourceToKpc(graph, kpc, source, openLabels, closedLabels);
+        if (stats != null) {
+            stats.searchNanos = System.nanoTime() - phaseStart;
+        }
+        Map<Integer, Set<Label>> paretoSets = collectParetoSets(graph, state);
+        commitQueryEvent(queryEvent, state, paretoSets);
+        return paretoSets;
+    }
 
-        int numIterations = 0;
+    /**
+     * Label-setting loop of the sequential searches, run until the queue is empty
+     * @param graph the graph to run the search on
+     * @param kpc   the KPC cover to run the search on, null to search the graph itself
+     * @param state state of the search with the initial labels queued
+     * @param listener  listener receiving the closed labels of the goal nodes, null if not used
+     */
+    private void expandLabels(Graph graph, KPC kpc, SearchState state, LabelListener listener) {
+        LabelArena arena = state.arena;
+        LabelQueue toExpand = state.toExpand;
+        int[] currentParameters = state.currentParameters;
+        int[] newParameters = state.newParameters;
+        SearchStats stats = state.stats;
 
         while (!toExpand.isEmpty()) {
-            Label currentLabel = toExpand.pollFirst();
-            int currentNode = currentLabel.getNode();
-
-            if (numIterations % 100000 == 0) {
-                System.out.println(toExpand.size());
+            int currentLabel = toExpand.poll();
+            int currentNode = arena.getNode(currentLabel);
+
+            arena.getParameters(currentLabel, currentParameters, 0);
+            // Grid dominance keeps labels dominated in their node, they are dropped when they reach a result node
+            if (state.gridCells != null && isResultNode(graph, currentNode) &&
+                    isDominatedByClosed(state, currentNode, currentParameters)) {
+                if (stats != null) {
+                    stats.numDominatedByClosed += 1;
+                }
+                continue;
             }
-            numIterations += 1;
-
-            openLabels.get(currentNode).remove(currentLabel);
-            closedLabels.get(currentNode).add(currentLabel);
-
-            // Expand to every neighbor in kPC graph
-            for (Map.Entry<Integer, List<CoverEdge>> entry : kpc.getOutgoingCoverEdges(currentNode).entrySet()) {
-                int nextNode = entry.getKey();
-                List<CoverEdge> availableEdges = entry.getValue();
-
-                // Ellipse pruning
-                if (useEllipsePruning && !isInEllipse(sourceNode, graph.getNode(nextNode))) {
-                    continue;
+            state.close(currentLabel, currentNode, currentParameters);
+            reportClosed(graph, state, currentLabel, listener);
+            if (state.gridCells != null) {
+                // Closed labels are not slower than the labels generated later, so they cover them at any time
+                state.getGridCells(currentNode).put(getGridCell(currentParameters) & ~GRID_TIME_MASK, currentLabel);
+            }
+            if (state.tSets != null) {
+                if (state.tSets[currentNode] == null) {
+                    state.tSets[currentNode] = new TSet();
                 }
+                state.tSets[currentNode].add(currentParameters[1], currentParameters[2], currentParameters[3]);
+            }
 
-                // Expand across every edge
-                for (CoverEdge nextEdge : availableEdges) {
-                    Label newLabel = new Label(nextNode, linkPaths(currentLabel, nextEdge));
+            // The target may have closed a dominating label since the label was queued
+            if (isPrunedByTarget(state, currentNode, currentParameters, state.optimisticParameters)) {
+                if (stats != null) {
+                    stats.numTargetPruned += 1;
+                }
+                continue;
+            }
 
-                    // Infeasible path
-                    if (constrained && infeasiblePath(newLabel)) {
+            if (kpc == null) {
+                int end = graph.getOutgoingEnd(currentNode);
+                for (int e = graph.getOutgoingBegin(currentNode); e < end; ++e) {
+                    int nextNode = graph.getOutgoingTarget(e);
+                    // Ellipse pruning
+                    if (useEllipsePruning && !isInEllipse(graph, state, nextNode)) {
                         continue;
                     }
 
-                    boolean isDominated = false;
-
-                    // Dominance by closed labels
-                    Set<Label> currentClosedLabels = closedLabels.get(nextNode);
-                    for (Label closed : currentClosedLabels) {
-                        if (dominates(closed, newLabel)) {
-                            isDominated = true;
-                            break;
-                        }
-                    }
-                    if (isDominated) {
-                        continue;
-                    }
+                    linkEdge(currentParameters, graph.getOutgoingTime(e), graph.getOutgoingConsumption(e),
+                            newParameters);
+                    relax(state, nextNode, currentLabel, LabelArena.NO_COVER_EDGE);
+                }
+            }
+            else {
+                // Expand across every cover edge to the neighbors in kPC graph
+                int end = kpc.getCoverEdgesEnd(currentNode);
+                for (int e = kpc.getCoverEdgesBegin(currentNode); e < end; ++e) {
+                    int nextNode = kpc.getCoverEdgeTarget(e);
 
-                    // Dominance by and of open labels
-                    List<Label> toRemove = new ArrayList<>();
-                    Set<Label> currentOpenLabels = openLabels.get(nextNode);
-                    for (Label open : currentOpenLabels) {
-                        if (dominates(open, newLabel)) {
-                            isDominated = true;
-                            break;
-                        } else if (dominates(newLabel, open)) {
-                            toRemove.add(open);
-                        }
-                    }
-                    if (isDominated) {
+                    // Ellipse pruning
+                    if (useEllipsePruning && !isInEllipse(graph, state, nextNode)) {
                         continue;
                     }
 
-                    // Remove dominated labels
-                    for (Label label : toRemove) {
-                        currentOpenLabels.remove(label);
-                        toExpand.remove(label);
-                    }
-
-                    toExpand.add(newLabel);
-                    currentOpenLabels.add(newLabel);
+                    linkCoverEdge(currentParameters, kpc, e, newParameters);
+                    relax(state, nextNode, currentLabel, e);
                 }
             }
+        }
+    }
+
+    /**
+     * Adds a search to the searches sampled by SearchProgressEvent if the event is enabled
+     * @param state state of the search
+     * @return  true if the search is to be removed from the sampled searches when it ends
+     */
+    private static boolean startSampling(SearchState state) {
+        if (!new SearchProgressEvent().isEnabled()) {
+            return false;
+        }
+        sampledSearches.add(state);
+        return true;
+    }
+
+    /**
+     * Periodic hook of SearchProgressEvent, called by the recorder thread
+     */
+    private static void emitSearchProgress() {
+        for (SearchState state : sampledSearches) {
+            SearchProgressEvent event = new SearchProgressEvent();
+            event.source = state.source;
+            event.variant = state.variant;
+            event.queueSize = state.toExpand.size();
+            event.numSettled = state.numSettled;
+            event.commit();
+        }
+    }
 
+    /**
+     * Ends the event of a finished query and commits it if it is enabled and above its threshold
+     * @param event event begun at the start of the query
+     * @param state state of the finished search
+     * @param paretoSets    the result of the query
+     */
+    private void commitQueryEvent(QueryEvent event, SearchState state, Map<Integer, Set<Label>> paretoSets) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.source = state.source;
+        event.variant = state.variant;
+        event.target = targetBounds == null ? -1 : targetBounds.getTarget();
+        event.ellipsePruning = useEllipsePruning;
+        event.epsilonDominance = useEpsilonDominance;
+        event.gridDominance = useGridDominance;
+        event.numSettled = state.numSettled;
+        for (Set<Label> paretoSet : paretoSets.values()) {
+            event.numGoalLabels += paretoSet.size();
         }
+        event.numGenerated = state.stats == null ? -1 : state.stats.numGenerated;
+        event.commit();
+    }
+
+    /**
+     * Collects the closed labels of the goal nodes and finishes the statistics
+     * @param graph the graph the search ran on
+     * @param state state of the finished search
+     * @return  the map of Pareto sets of the goal nodes defined in graph
+     */
+    private Map<Integer, Set<Label>> collectParetoSets(Graph graph, SearchState state) {
+        long startTime = state.stats == null ? 0 : System.nanoTime();
+        LabelArena arena = state.arena;
+
         Map<Integer, Set<Label>> paretoSets = new HashMap<>();
-        for (int nodeIndex : graph.getGoals()) {
-            paretoSets.put(nodeIndex, closedLabels.get(nodeIndex));
+        List<Integer> goals = targetBounds == null ? graph.getGoals() :
+                Collections.singletonList(targetBounds.getTarget());
+        for (int nodeIndex : goals) {
+            Set<Label> paretoSet = new HashSet<>();
+            IntList closed = state.closedLabels[nodeIndex];
+            for (int i = 0; closed != null && i < closed.size(); ++i) {
+                paretoSet.add(state.routes.toLabel(arena, closed.get(i)));
+            }
+            paretoSets.put(nodeIndex, paretoSet);
         }
 
-        long endTime = System.nanoTime();
-        long  queryDuration = ((endTime - startTime) / 1000000000);
-        System.out.println("Query duration -- " + queryDuration);
+        if (state.stats != null) {
+            if (useGridDominance) {
+                state.stats.gridTimeRatio = 1 + gridEpsilon;
+                state.stats.gridSoCStep = gridSoCStep;
+            }
+            state.stats.numSettled = state.numSettled;
+            state.stats.collectNanos = System.nanoTime() - startTime;
+            if (verbose) {
+                System.out.println(state.stats);
+            }
+        }
 
         return paretoSets;
     }
 
     /**
-     * MLS on a kPC cover with t-discarding
-     * @param graph the graph to run the search on
-     * @param kpc   the KPC cover of the graph
-     * @param source    the node id of the search source
-     * @return  the map of Pareto sets of the goal nodes defined in graph
+     * Passes a closed label to the listener if it is a label of a goal, or of the target with target pruning
+     * @param graph the graph the search runs on
+     * @param state state of the search
+     * @param label handle of the closed label
+     * @param listener  listener of the search, null if not used
      */
-    Map<Integer, Set<Label>> tKpcMls(Graph graph, KPC kpc, int source) {
-        long startTime = System.nanoTime();
+    private void reportClosed(Graph graph, SearchState state, int label, LabelListener listener) {
+        if (listener == null) {
+            return;
+        }
+        if (isResultNode(graph, state.arena.getNode(label))) {
+            listener.onSettled(state.routes.toLabel(state.arena, label));
+        }
+    }
 
-        int numNodes = graph.getNumNodes();
+    /**
+     * @return  true if the Pareto set of the node is returned, the node is a goal, or the target with target pruning
+     */
+    private boolean isResultNode(Graph graph, int node) {
+        return targetBounds == null ? graph.isGoal(node) : node == targetBounds.getTarget();
+    }
 
-        Node sourceNode = graph.getNode(source);
-        if (useEllipsePruning) {
-            ellipseDistance = getDistance(sourceNode, ellipseGoal) * ellipseCoefficient;
-        }
-
-        Map<Integer, Set<Label>> closedLabels = new HashMap<>(kpc.getNumCoverNodes());
-        Map<Integer, Set<Label>> openLabels = new HashMap<>(kpc.getNumCoverNodes());
-        // Arrays for tDiscarding
-        Map<Integer, TreeSet<Integer[]>> tSets = new HashMap<>(kpc.getNumCoverNodes());
-//        Map<Integer, Integer> maxFirstParameter = new HashMap<>(kpc.getNumCoverNodes());
-
-        for (int i = 0; i < numNodes; ++i) {
-            if (kpc.inCover(i)) {
-                closedLabels.put(i, new HashSet<>());
-                openLabels.put(i, new HashSet<>());
-                tSets.put(i, new TreeSet<>((integers, t1) -> {
-                    for (int t = 0; t < integers.length; ++t) {
-                        if (integers[t] != t1[t]) {
-                            if (maximize[t + 1]) {
-                                return Integer.compare(t1[t], integers[t]);
-                            }
-                            else {
-                                return Integer.compare(integers[t], t1[t]);
-                            }
-                        }
-                    }
-                    return 0;
-                }));
-//            maxFirstParameter[i] = 0;
+    /**
+     * @param state state of the search
+     * @param node  node of the label
+     * @param parameters    parameters of the label
+     * @return  true if a closed label of the node dominates the label
+     */
+    private boolean isDominatedByClosed(SearchState state, int node, int[] parameters) {
+        IntList closed = state.closedLabels[node];
+        for (int i = 0; closed != null && i < closed.size(); ++i) {
+            state.arena.getParameters(closed.get(i), state.labelParameters, 0);
+            if (dominates(state.labelParameters, parameters)) {
+                return true;
             }
         }
+        return false;
+    }
 
-        TreeSet<Label> toExpand = connectSourceToKpc(graph, kpc, source, openLabels, closedLabels);
-        for (Map.Entry<Integer, Set<Label>> entry : closedLabels.entrySet()) {
-            for (Label lab : entry.getValue()) {
-                updateTSet(tSets.get(entry.getKey()), lab);
+    /**
+     * Passes the goal labels closed while connecting the source to the cover to the listener
+     */
+    private void reportClosedGoals(Graph graph, SearchState state, LabelListener listener) {
+        for (int node = 0; listener != null && node < state.closedLabels.length; ++node) {
+            IntList closed = state.closedLabels[node];
+            for (int i = 0; closed != null && i < closed.size(); ++i) {
+                reportClosed(graph, state, closed.get(i), listener);
             }
         }
+    }
 
-        int numIterations = 0;
+    private static int getNumClosedLabels(SearchState state, int node) {
+        return state.closedLabels[node] == null ? 0 : state.closedLabels[node].size();
+    }
 
-        while (!toExpand.isEmpty()) {
-            Label currentLabel = toExpand.pollFirst();
-            int currentNode = currentLabel.getNode();
+    /**
+     * Adds the label given by state.newParameters to the search unless it is infeasible or dominated,
+     * open labels dominated by the new label are removed
+     * @param state state of the search
+     * @param nextNode  node of the new label
+     * @param parent    handle of the label the new label is extended from
+     * @param coverEdge cover edge the label is extended across, NO_COVER_EDGE for a graph edge
+     */
+    private void relax(SearchState state, int nextNode, int parent, int coverEdge) {
+        int[] newParameters = state.newParameters;
+        int[] labelParameters = state.labelParameters;
+        LabelArena arena = state.arena;
+        SearchStats stats = state.stats;
+        if (stats != null) {
+            stats.numGenerated += 1;
+        }
 
-            if (numIterations % 100000 == 0) {
-                System.out.println(toExpand.size());
+        // Infeasible path
+        if (constrained && infeasiblePath(newParameters[1], newParameters[3])) {
+            if (stats != null) {
+                stats.numInfeasible += 1;
             }
-            numIterations += 1;
+            return;
+        }
 
-            openLabels.get(currentNode).remove(currentLabel);
-            closedLabels.get(currentNode).add(currentLabel);
-            updateTSet(tSets.get(currentNode), currentLabel);
+        // No extension to the target beats the labels closed there
+        if (isPrunedByTarget(state, nextNode, newParameters, state.optimisticParameters)) {
+            if (stats != null) {
+                stats.numTargetPruned += 1;
+            }
+            return;
+        }
 
-            // Expand to every neighbor in kPC graph
-            for (Map.Entry<Integer, List<CoverEdge>> entry : kpc.getOutgoingCoverEdges(currentNode).entrySet()) {
-                int nextNode = entry.getKey();
-                List<CoverEdge> availableEdges = entry.getValue();
+        if (state.gridCells != null) {
+            // Grid cell or a neighbor cell is occupied, the cells are the only labels of the node
+            GridCells cells = state.getGridCells(nextNode);
+            long cell = getGridCell(newParameters);
+            if (isGridCovered(cells, cell) || isGridCovered(cells, cell & ~GRID_TIME_MASK)) {
+                if (stats != null) {
+                    stats.numGridCovered += 1;
+                }
+                return;
+            }
+            int newLabel = arena.add(nextNode, newParameters, 0, parent, coverEdge);
+            state.toExpand.add(newLabel);
+            cells.put(cell, newLabel);
+            if (stats != null) {
+                stats.updatePeakQueueSize(state.toExpand.size());
+                stats.updatePeakLabelsPerNode(cells.size());
+            }
+            return;
+        }
 
-                // Ellipse pruning
-                if (useEllipsePruning && !isInEllipse(sourceNode, graph.getNode(nextNode))) {
-                    continue;
+        if (state.tSets != null) {
+            // tDiscarding by closed labels
+            if (tDiscards(state.tSets[nextNode], newParameters)) {
+                if (stats != null) {
+                    stats.numDominatedByClosed += 1;
                 }
+                return;
+            }
+        }
+        else {
+            // Dominance by closed labels
+            IntList currentClosedLabels = state.closedLabels[nextNode];
+            for (int i = 0; currentClosedLabels != null && i < currentClosedLabels.size(); ++i) {
+                arena.getParameters(currentClosedLabels.get(i), labelParameters, 0);
+                if (dominates(labelParameters, newParameters)) {
+                    if (stats != null) {
+                        stats.numDominatedByClosed += 1;
+                    }
+                    return;
+                }
+            }
+        }
 
-                // Expand across every edge
-                for (CoverEdge nextEdge : availableEdges) {
-                    Label newLabel = new Label(nextNode, linkPaths(currentLabel, nextEdge));
+        // Dominance by and of open labels
+        float[] frontierEpsilons = useEpsilonDominance ? epsilons : null;
+        OpenFrontier currentOpenLabels = state.getOpenLabels(nextNode);
+        if (currentOpenLabels.isDominated(newParameters, frontierEpsilons)) {
+            if (stats != null) {
+                stats.numDominatedByOpen += 1;
+            }
+            return;
+        }
 
-                    // Infeasible path
-                    if (constrained && infeasiblePath(newLabel)) {
-                        continue;
-                    }
+        // Remove dominated labels
+        IntList toRemove = state.toRemove;
+        toRemove.clear();
+        currentOpenLabels.removeDominated(newParameters, frontierEpsilons, toRemove);
+        for (int i = 0; i < toRemove.size(); ++i) {
+            state.toExpand.remove(toRemove.get(i));
+        }
 
-                    boolean isDominated = false;
+        int newLabel = arena.add(nextNode, newParameters, 0, parent, coverEdge);
+        state.toExpand.add(newLabel);
+        currentOpenLabels.add(newLabel, newParameters);
+        if (stats != null) {
+            stats.numEvicted += toRemove.size();
+            stats.updatePeakQueueSize(state.toExpand.size());
+            stats.updatePeakLabelsPerNode(currentOpenLabels.size() + getNumClosedLabels(state, nextNode));
+        }
+    }
 
-                    // tDiscarding by closed labels
-                    if (tDiscards(tSets.get(nextNode), newLabel)) {
-                        continue;
-                    }
+    /**
+     * Target pruning test of a label
+     * @param state state of the search
+     * @param node  node of the label
+     * @param parameters    parameters of the label
+     * @param optimisticParameters  scratch array for the optimistic parameters
+     * @return  true if target pruning is used and no extension of the label to the target can be in its Pareto set
+     */
+    private boolean isPrunedByTarget(SearchState state, int node, int[] parameters, int[] optimisticParameters) {
+        if (targetBounds == null) {
+            return false;
+        }
+        if (!targetBounds.getOptimisticParameters(node, parameters, optimisticParameters)) {
+            return true;
+        }
+        return state.targetLabels.isDominated(optimisticParameters, useEpsilonDominance ? epsilons : null);
+    }
 
-                    // Dominance by and of open labels
-                    List<Label> toRemove = new ArrayList<>();
-                    Set<Label> currentOpenLabels = openLabels.get(nextNode);
-                    for (Label open : currentOpenLabels) {
-                        if (dominates(open, newLabel)) {
-                            isDominated = true;
-                            break;
-                        } else if (dominates(newLabel, open)) {
-                            toRemove.add(open);
-                        }
-                    }
-                    if (isDominated) {
-                        continue;
-                    }
+    /**
+     * @param kpc   the KPC cover the search runs on, null for a search on the graph
+     * @throws IllegalArgumentException if target pruning is used and the target is not in the cover
+     */
+    private void checkTargetInCover(KPC kpc) {
+        if (targetBounds != null && kpc != null && !kpc.inCover(targetBounds.getTarget())) {
+            throw new IllegalArgumentException("Target " + targetBounds.getTarget() + " is not in the cover");
+        }
+    }
 
-                    // Remove dominated labels
-                    for (Label label : toRemove) {
-                        currentOpenLabels.remove(label);
-                        toExpand.remove(label);
+    /**
+     * A label in the grid cell of a new label, or in a neighbor cell lower by one in some costs, is not worse
+     * than the new label by more than one step of the grid in every cost
+     * @param cells occupied grid cells of the node of the new label
+     * @param cell  packed cell of the new label
+     * @return  true if such a cell is occupied
+     */
+    private static boolean isGridCovered(GridCells cells, long cell) {
+        for (int neighbor = 0; neighbor < 16; ++neighbor) {
+            long neighborCell = cell;
+            boolean exists = true;
+            for (int p = 0; p < numPathParameters; ++p) {
+                if ((neighbor & (1 << p)) != 0) {
+                    if (((cell >>> (16 * p)) & 0xFFFF) == 0) {
+                        exists = false;
+                        break;
                     }
-
-                    toExpand.add(newLabel);
-                    currentOpenLabels.add(newLabel);
+                    neighborCell -= 1L << (16 * p);
                 }
             }
-
-        }
-        Map<Integer, Set<Label>> paretoSets = new HashMap<>();
-        for (int nodeIndex : graph.getGoals()) {
-            paretoSets.put(nodeIndex, closedLabels.get(nodeIndex));
+            if (exists && cells.get(neighborCell) >= 0) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        long endTime = System.nanoTime();
-        long  queryDuration = ((endTime - startTime) / 1000000000);
-        System.out.println("Query duration -- " + queryDuration);
+    /**
+     * Time is mapped to a logarithmic coordinate, the SoC parameters of a feasible label to linear coordinates
+     * of the costs minSoCBefore, consumption + batteryCapacity and batteryCapacity - maxSoCAfter
+     * @param parameters    parameters of a feasible label
+     * @return  grid coordinates of the four costs of the label, 16 bits each
+     */
+    private long getGridCell(int[] parameters) {
+        long timeCoordinate = Math.min(0x7FFF, (long) (Math.log1p(Math.max(0, parameters[0])) * gridScale));
+        return timeCoordinate | getSoCCoordinate((long) parameters[1]) << 16 |
+                getSoCCoordinate((long) parameters[2] + batteryCapacity) << 32 |
+                getSoCCoordinate((long) batteryCapacity - parameters[3]) << 48;
+    }
 
-        return paretoSets;
+    private long getSoCCoordinate(long cost) {
+        // Costs of feasible labels are in [0, 2 * batteryCapacity], so for epsilon >= 0.001 coordinates stay
+        // below 2^15 and a packed cell is never negative
+        return Math.min(0x7FFF, Math.max(0, cost) / gridSoCStep);
     }
 
     /**
      * If the search node is node in the cover, this function extends the paths from the source
-     * to the neighbor cover vertices
+     * to the neighbor cover vertices. Reached cover nodes get their open labels, and these labels are
+     * put to the queue of the search.
      * @param graph graph to run the search on
      * @param kpc   KPC cover of the graph
      * @param source    source node id
-     * @param openLabels    map of open labels of the overall search
-     * @param closedLabels  map of closed labels of the overall search
-     * @return  lexicographically ordered queue of labels to extend in kPC search
+     * @param state state of the kPC search
      */
-    private TreeSet<Label> connectSourceToKpc(Graph graph, KPC kpc, int source, Map<Integer, Set<Label>> openLabels, Map<Integer, Set<Label>> closedLabels) {
-        TreeSet<Label> toExpand = new TreeSet<>();
-        Label sourceLabel = new Label(source, getInitialPathParameters());
+    private void connectSourceToKpc(Graph graph, KPC kpc, int source, SearchState state) {
+        ConnectSourceEvent event = new ConnectSourceEvent();
+        event.begin();
+        LabelArena arena = state.arena;
+        int sourceLabel = arena.add(source, getInitialPathParameters(), 0, LabelArena.NO_PARENT,
+                LabelArena.NO_COVER_EDGE);
         if (kpc.inCover(source)) {
-            toExpand.add(sourceLabel);
-            openLabels.get(source).add(sourceLabel);
-            return toExpand;
+            state.toExpand.add(sourceLabel);
+            state.getOpenLabels(source).add(sourceLabel, getInitialPathParameters());
+            commitConnectSourceEvent(event, source, true, 0, 0);
+            return;
         }
-        else {
-            Map<Integer, Set<Label>> tempClosedLabels = new HashMap<>();
-            Map<Integer, Set<Label>> tempOpenLabels = new HashMap<>();
-            tempOpenLabels.put(source, new TreeSet<>(Collections.singletonList(sourceLabel)));
-            tempClosedLabels.put(source, new TreeSet<>());
 
-            Node sourceNode = graph.getNode(source);
-            if (useEllipsePruning) {
-                ellipseDistance = getDistance(sourceNode, ellipseGoal) * ellipseCoefficient;
-            }
+        // Times of the labels reaching the cover are below the times polled by the end of this search,
+        // so the search has its own queue and the cover labels are put to the queue of the kPC search after it
+        LabelQueue toExpand = new LabelQueue(arena);
 
-            toExpand.add(sourceLabel);
+        int[] currentParameters = state.currentParameters;
+        int[] newParameters = state.newParameters;
+        int[] labelParameters = state.labelParameters;
+        SearchStats stats = state.stats;
+        IntList reachedCoverNodes = new IntList();
+        state.getOpenLabels(source).add(sourceLabel, getInitialPathParameters());
 
-            while (!toExpand.isEmpty()) {
-                Label currentLabel = toExpand.pollFirst();
-                int currentNode = currentLabel.getNode();
+        toExpand.add(sourceLabel);
 
-                tempOpenLabels.get(currentNode).remove(currentLabel);
-                tempClosedLabels.get(currentNode).add(currentLabel);
+        while (!toExpand.isEmpty()) {
+            int currentLabel = toExpand.poll();
+            int currentNode = arena.getNode(currentLabel);
 
-                for (Edge nextEdge : graph.getOutgoingEdges(currentNode)) {
-                    int nextNode = nextEdge.getEndPoint();
+            arena.getParameters(currentLabel, currentParameters, 0);
+            state.close(currentLabel, currentNode, currentParameters);
 
-                    // Ellipse pruning
-                    if (useEllipsePruning && !isInEllipse(sourceNode, graph.getNode(nextNode))) {
-                        continue;
-                    }
-
-                    Label newLabel = new Label(nextNode, linkPaths(currentLabel, nextEdge));
-                    if (constrained && infeasiblePath(newLabel)) {
-                        continue;
-                    }
+            int end = graph.getOutgoingEnd(currentNode);
+            for (int e = graph.getOutgoingBegin(currentNode); e < end; ++e) {
+                int nextNode = graph.getOutgoingTarget(e);
 
-                    if (!tempOpenLabels.containsKey(nextNode)) {
-                        tempOpenLabels.put(nextNode, new TreeSet<>());
-                        tempClosedLabels.put(nextNode, new TreeSet<>());
-                    }
+                // Ellipse pruning
+                if (useEllipsePruning && !isInEllipse(graph, state, nextNode)) {
+                    continue;
+                }
 
-                    // Domination check by closed labels
-                    boolean isDominated = false;
-                    Set<Label> currentClosedLabels = tempClosedLabels.get(nextNode);
-                    for (Label closed : currentClosedLabels) {
-                        if (dominates(closed, newLabel)) {
-                            isDominated = true;
-                            break;
-                        }
+                linkEdge(currentParameters, graph.getOutgoingTime(e), graph.getOutgoingConsumption(e),
+                        newParameters);
+                if (stats != null) {
+                    stats.numGenerated += 1;
+                }
+                if (constrained && infeasiblePath(newParameters[1], newParameters[3])) {
+                    if (stats != null) {
+                        stats.numInfeasible += 1;
                     }
-                    if (isDominated) {
-                        continue;
+                    continue;
+                }
+                if (isPrunedByTarget(state, nextNode, newParameters, state.optimisticParameters)) {
+                    if (stats != null) {
+                        stats.numTargetPruned += 1;
                     }
+                    continue;
+                }
 
-                    // Domination check by and of open labels
-                    List<Label> toRemove = new ArrayList<>();
-                    Set<Label> currentOpenLabels = tempOpenLabels.get(nextNode);
-                    for (Label open : currentOpenLabels) {
-                        if (dominates(open, newLabel)) {
-                            isDominated = false;
-                        }
-                        else if (dominates(newLabel, open)) {
-                            toRemove.add(open);
-                        }
-                    }
-                    if (isDominated) {
-                        continue;
+                if (kpc.inCover(nextNode) && state.openLabels[nextNode] == null) {
+                    reachedCoverNodes.add(nextNode);
+                }
+
+                // Domination check by closed labels
+                boolean isDominated = false;
+                IntList currentClosedLabels = state.closedLabels[nextNode];
+                for (int i = 0; currentClosedLabels != null && i < currentClosedLabels.size(); ++i) {
+                    arena.getParameters(currentClosedLabels.get(i), labelParameters, 0);
+                    if (dominates(labelParameters, newParameters)) {
+                        isDominated = true;
+                        break;
                     }
-                    for (Label label : toRemove) {
-                        toExpand.remove(label);
-                        currentOpenLabels.remove(label);
+                }
+                if (isDominated) {
+                    if (stats != null) {
+                        stats.numDominatedByClosed += 1;
                     }
+                    continue;
+                }
 
-                    currentOpenLabels.add(newLabel);
-                    if (!kpc.inCover(nextNode)) {
-                        toExpand.add(newLabel);
-                    }
+                // Domination of open labels, labels dominated by an open label are kept
+                IntList toRemove = state.toRemove;
+                toRemove.clear();
+                OpenFrontier currentOpenLabels = state.getOpenLabels(nextNode);
+                currentOpenLabels.removeDominated(newParameters, useEpsilonDominance ? epsilons : null, toRemove);
+                for (int i = 0; i < toRemove.size(); ++i) {
+                    toExpand.remove(toRemove.get(i));
+                }
+
+                int newLabel = arena.add(nextNode, newParameters, 0, currentLabel, LabelArena.NO_COVER_EDGE);
+                currentOpenLabels.add(newLabel, newParameters);
+                if (!kpc.inCover(nextNode)) {
+                    toExpand.add(newLabel);
+                }
+                if (stats != null) {
+                    stats.numEvicted += toRemove.size();
+                    stats.updatePeakQueueSize(toExpand.size());
+                    stats.updatePeakLabelsPerNode(currentOpenLabels.size() + getNumClosedLabels(state, nextNode));
                 }
             }
+        }
 
-            for (Integer node : tempOpenLabels.keySet()) {
-                if (kpc.inCover(node)) {
-                    openLabels.put(node, tempOpenLabels.get(node));
-                    closedLabels.put(node, tempClosedLabels.get(node));
-                    toExpand.addAll(tempOpenLabels.get(node));
+        for (int i = 0; i < reachedCoverNodes.size(); ++i) {
+            OpenFrontier coverOpenLabels = state.openLabels[reachedCoverNodes.get(i)];
+            for (int j = 0; j < coverOpenLabels.size(); ++j) {
+                state.toExpand.add(coverOpenLabels.getLabel(j));
+                if (state.gridCells != null) {
+                    arena.getParameters(coverOpenLabels.getLabel(j), labelParameters, 0);
+                    long cell = getGridCell(labelParameters);
+                    if (state.getGridCells(reachedCoverNodes.get(i)).get(cell) < 0) {
+                        state.getGridCells(reachedCoverNodes.get(i)).put(cell, coverOpenLabels.getLabel(j));
+                    }
                 }
             }
+        }
+        commitConnectSourceEvent(event, source, false, reachedCoverNodes.size(), state.numSettled);
+    }
 
-            return toExpand;
+    private static void commitConnectSourceEvent(ConnectSourceEvent event, int source, boolean sourceInCover,
+                                                 int numReachedCoverNodes, long numSettled) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.sourceInCover = sourceInCover;
+            event.numReachedCoverNodes = numReachedCoverNodes;
+            event.numSettled = numSettled;
+            event.commit();
         }
     }
 }
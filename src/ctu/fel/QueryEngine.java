@@ -0,0 +1,124 @@
+package ctu.fel;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent queries concurrently against one graph and its cover. The graph and the cover are only read
+ * by the searches, and every search keeps its mutable state in its own context, so the queries share a single
+ * planner configured before the engine is created. Results of a query besides its Pareto sets, like the number
+ * of settled labels, are returned in the statistics passed with the query, the planner holds none of them.
+ * The number of running queries is bounded by the worker pool, the number of submitted unfinished queries
+ * by a semaphore which blocks further submissions.
+ */
+class QueryEngine implements AutoCloseable {
+    /**
+     * Search variant of a query
+     */
+    enum Variant {
+        MLS, T_MLS, KPC_MLS, T_KPC_MLS
+    }
+
+    private final Graph graph;
+    private final KPC kpc;
+    private final Planner planner;
+    private final ExecutorService workers;
+    private final Semaphore pending;
+
+    /**
+     * @param graph graph to run the queries on
+     * @param kpc   the KPC cover of the graph, null if only MLS and T_MLS queries are run
+     * @param planner   configuration of the searches, copied, so that later changes do not affect the engine
+     * @param parallelism   number of concurrently running queries
+     * @param maxPending    number of submitted unfinished queries at which submit() blocks
+     */
+    QueryEngine(Graph graph, KPC kpc, Planner planner, int parallelism, int maxPending) {
+        if (parallelism < 1 || maxPending < parallelism) {
+            throw new IllegalArgumentException("Invalid parallelism " + parallelism + " or pending limit " + maxPending);
+        }
+        this.graph = graph;
+        this.kpc = kpc;
+        this.planner = new Planner(planner);
+        this.planner.setVerbose(false);
+        this.pending = new Semaphore(maxPending);
+
+        AtomicInteger numThreads = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "query-worker-" + numThreads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submits a query, blocks while the number of pending queries is at its limit
+     * @param variant   search variant
+     * @param source    the node id of the search source
+     * @return  future completed with the map of Pareto sets of the goal nodes, or with the exception of the search
+     * @throws InterruptedException if interrupted while waiting for a free slot
+     */
+    CompletableFuture<Map<Integer, Set<Label>>> submit(Variant variant, int source) throws InterruptedException {
+        return submit(variant, source, null);
+    }
+
+    /**
+     * Submits a query collecting statistics, blocks while the number of pending queries is at its limit
+     * @param variant   search variant
+     * @param source    the node id of the search source
+     * @param stats statistics to be filled by the query, complete once the future is completed, null if not collected
+     * @return  future completed with the map of Pareto sets of the goal nodes, or with the exception of the search
+     * @throws InterruptedException if interrupted while waiting for a free slot
+     */
+    CompletableFuture<Map<Integer, Set<Label>>> submit(Variant variant, int source, SearchStats stats)
+            throws InterruptedException {
+        if ((variant == Variant.KPC_MLS || variant == Variant.T_KPC_MLS) && kpc == null) {
+            throw new IllegalStateException("The engine has no cover for " + variant + " queries");
+        }
+
+        pending.acquire();
+        try {
+            CompletableFuture<Map<Integer, Set<Label>>> result = CompletableFuture.supplyAsync(
+                    () -> run(variant, source, stats), workers);
+            result.whenComplete((paretoSets, exception) -> pending.release());
+            return result;
+        }
+        catch (RuntimeException e) {
+            pending.release();
+            throw e;
+        }
+    }
+
+    private Map<Integer, Set<Label>> run(Variant variant, int source, SearchStats stats) {
+        switch (variant) {
+            case MLS:
+                return planner.mls(graph, source, stats);
+            case T_MLS:
+                return planner.tMls(graph, source, stats);
+            case KPC_MLS:
+                return planner.kpcMls(graph, kpc, source, stats);
+            default:
+                return planner.tKpcMls(graph, kpc, source, stats);
+        }
+    }
+
+    /**
+     * Stops accepting queries and waits for the submitted ones to finish. If the waiting thread is interrupted,
+     * the running queries are left to finish on their own and the interrupt status is restored.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
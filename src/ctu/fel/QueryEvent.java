@@ -0,0 +1,46 @@
+package ctu.fel;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning a query of the planner, committed when the query returns its Pareto sets
+ */
+@Name("ctu.fel.Query")
+@jdk.jfr.Label("Query")
+@Category("Routing")
+@Description("Multicriteria search from a source node")
+class QueryEvent extends Event {
+    @jdk.jfr.Label("Source")
+    int source;
+
+    @jdk.jfr.Label("Variant")
+    @Description("MLS, T_MLS, KPC_MLS or T_KPC_MLS")
+    String variant;
+
+    @jdk.jfr.Label("Target")
+    @Description("Target of target pruning, -1 without target pruning")
+    int target;
+
+    @jdk.jfr.Label("Ellipse Pruning")
+    boolean ellipsePruning;
+
+    @jdk.jfr.Label("Epsilon Dominance")
+    boolean epsilonDominance;
+
+    @jdk.jfr.Label("Grid Dominance")
+    boolean gridDominance;
+
+    @jdk.jfr.Label("Settled Labels")
+    long numSettled;
+
+    @jdk.jfr.Label("Goal Labels")
+    @Description("Labels in the returned Pareto sets")
+    long numGoalLabels;
+
+    @jdk.jfr.Label("Generated Labels")
+    @Description("-1 if the query collected no statistics")
+    long numGenerated;
+}
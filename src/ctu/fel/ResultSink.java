@@ -0,0 +1,40 @@
+package ctu.fel;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Destination of the goal labels of a search, labels are written one by one as they are closed or
+ * per goal from the map returned by a search
+ */
+interface ResultSink extends AutoCloseable {
+    /**
+     * @param label label of a goal node, the node is given by label.getNode()
+     * @throws IOException  if the label cannot be written
+     */
+    void write(Label label) throws IOException;
+
+    /**
+     * Writes the Pareto sets of the goals, the labels of a goal in lexicographic order
+     * @param paretoSets    map of Pareto sets of the goal nodes returned by a search
+     * @throws IOException  if the labels cannot be written
+     */
+    default void write(Map<Integer, Set<Label>> paretoSets) throws IOException {
+        for (Set<Label> paretoSet : paretoSets.values()) {
+            Label[] labels = paretoSet.toArray(new Label[0]);
+            Arrays.sort(labels);
+            for (Label label : labels) {
+                write(label);
+            }
+        }
+    }
+
+    /**
+     * Finishes the output and releases the file
+     * @throws IOException  if the output cannot be finished
+     */
+    @Override
+    void close() throws IOException;
+}
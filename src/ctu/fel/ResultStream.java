@@ -0,0 +1,117 @@
+package ctu.fel;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+/**
+ * Iterator over the goal labels of a search running on a background thread, in the order they are closed.
+ * The labels pass through a bounded queue, a search getting ahead of the consumer waits for it, so a slow
+ * consumer bounds the memory held by the stream. Closing the stream before its end cancels the search.
+ * The routes of the labels are kept in the route tree of the running search, which grows with every label,
+ * getRoute() is therefore to be called after the stream ended.
+ */
+class ResultStream implements Iterator<Label>, AutoCloseable {
+    // Marks the end of the search in the queue
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final Thread searchThread;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    private Label next;
+    private boolean ended;
+
+    /**
+     * Starts a search on a background thread
+     * @param capacity  number of labels the consumer may fall behind the search
+     * @param search    search to be run with the listener of the stream, for example
+     *                  listener -> planner.tKpcMls(graph, kpc, source, listener)
+     */
+    ResultStream(int capacity, Consumer<LabelListener> search) {
+        queue = new ArrayBlockingQueue<>(capacity);
+        searchThread = new Thread(() -> {
+            try {
+                search.accept(this::put);
+            }
+            catch (CancellationException e) {
+                return;
+            }
+            catch (Throwable e) {
+                failure = e;
+            }
+            try {
+                queue.put(END);
+            }
+            catch (InterruptedException e) {
+                // Closed by the consumer, nobody waits for the end
+            }
+        }, "result-stream");
+        searchThread.setDaemon(true);
+        searchThread.start();
+    }
+
+    private void put(Label label) {
+        try {
+            queue.put(label);
+        }
+        catch (InterruptedException e) {
+            throw new CancellationException("Result stream was closed");
+        }
+    }
+
+    /**
+     * Waits for the next label or the end of the search
+     * @throws IllegalStateException    if the search failed or the waiting thread was interrupted
+     */
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (ended || closed) {
+            return false;
+        }
+        Object element;
+        try {
+            element = queue.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a label", e);
+        }
+        if (element == END) {
+            ended = true;
+            if (failure != null) {
+                throw new IllegalStateException("Search failed", failure);
+            }
+            return false;
+        }
+        next = (Label) element;
+        return true;
+    }
+
+    @Override
+    public Label next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Label label = next;
+        next = null;
+        return label;
+    }
+
+    /**
+     * Cancels the search if it is still running
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            searchThread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package ctu.fel;
+
+import java.util.Arrays;
+
+/**
+ * Exact single-criterion distances to a target computed by reverse searches over the incoming edges of the
+ * graph at query time. Times are not negative and are searched by Dijkstra's algorithm, consumptions may be
+ * negative due to recuperation and are searched by a label-correcting queue, which fails on a negative cycle.
+ * The distances over graph edges bound the parameters of the paths over cover edges as well.
+ * The searches also run forward from a root node for the landmark distances of Landmarks.
+ */
+class ReverseSearchBounds extends TargetBounds {
+    private final int target;
+    private final int[] times;
+    private final int[] consumptions;
+
+    /**
+     * @param graph graph to search
+     * @param target    the node id of the target
+     * @throws IllegalStateException    if the consumptions of the graph form a negative cycle
+     */
+    ReverseSearchBounds(Graph graph, int target) {
+        this.target = target;
+        this.times = shortestTimes(graph, target, true);
+        this.consumptions = shortestConsumptions(graph, target, true);
+    }
+
+    @Override
+    int getTarget() {
+        return target;
+    }
+
+    @Override
+    int getTimeBound(int node) {
+        return times[node];
+    }
+
+    @Override
+    int getConsumptionBound(int node) {
+        return consumptions[node];
+    }
+
+    /**
+     * Dijkstra's algorithm on time
+     * @param graph graph to search
+     * @param root  root node of the search
+     * @param reverse   true for the distances to the root over the incoming edges, false for the distances
+     *                  from the root over the outgoing edges
+     * @return  the distances of all nodes, UNREACHABLE for the nodes not connected to the root
+     */
+    static int[] shortestTimes(Graph graph, int root, boolean reverse) {
+        int[] distances = new int[graph.getNumNodes()];
+        Arrays.fill(distances, UNREACHABLE);
+        distances[root] = 0;
+
+        // Binary heap of (distance << 32 | node), entries of improved nodes are skipped when polled
+        long[] heap = new long[64];
+        int heapSize = 0;
+        heap[heapSize++] = root;
+        while (heapSize > 0) {
+            long top = heap[0];
+            heapSize -= 1;
+            heap[0] = heap[heapSize];
+            siftDown(heap, heapSize);
+
+            int node = (int) top;
+            long distance = top >>> 32;
+            if (distance > distances[node]) {
+                continue;
+            }
+
+            int end = reverse ? graph.getIncomingEnd(node) : graph.getOutgoingEnd(node);
+            for (int e = reverse ? graph.getIncomingBegin(node) : graph.getOutgoingBegin(node); e < end; ++e) {
+                int neighbor = reverse ? graph.getIncomingSource(e) : graph.getOutgoingTarget(e);
+                long newDistance = distance + (reverse ? graph.getIncomingTime(e) : graph.getOutgoingTime(e));
+                if (newDistance < Math.min(distances[neighbor], (long) UNREACHABLE)) {
+                    distances[neighbor] = (int) newDistance;
+                    if (heapSize == heap.length) {
+                        heap = Arrays.copyOf(heap, 2 * heapSize);
+                    }
+                    heap[heapSize] = newDistance << 32 | neighbor;
+                    siftUp(heap, heapSize++);
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Label-correcting search on consumption
+     * @param graph graph to search
+     * @param root  root node of the search
+     * @param reverse   true for the distances to the root over the incoming edges, false for the distances
+     *                  from the root over the outgoing edges
+     * @return  the distances of all nodes, UNREACHABLE for the nodes not connected to the root
+     * @throws IllegalStateException    if the consumptions of the graph form a negative cycle
+     */
+    static int[] shortestConsumptions(Graph graph, int root, boolean reverse) {
+        int numNodes = graph.getNumNodes();
+        int[] distances = new int[numNodes];
+        Arrays.fill(distances, UNREACHABLE);
+        distances[root] = 0;
+
+        // FIFO of nodes with an improved distance, a node is improved at most numNodes - 1 times without
+        // a negative cycle
+        int[] queue = new int[numNodes];
+        boolean[] queued = new boolean[numNodes];
+        int[] numImprovements = new int[numNodes];
+        int head = 0;
+        int queueSize = 1;
+        queue[0] = root;
+        queued[root] = true;
+        while (queueSize > 0) {
+            int node = queue[head];
+            head = (head + 1) % numNodes;
+            queueSize -= 1;
+            queued[node] = false;
+
+            int end = reverse ? graph.getIncomingEnd(node) : graph.getOutgoingEnd(node);
+            for (int e = reverse ? graph.getIncomingBegin(node) : graph.getOutgoingBegin(node); e < end; ++e) {
+                int neighbor = reverse ? graph.getIncomingSource(e) : graph.getOutgoingTarget(e);
+                long newDistance = (long) distances[node] +
+                        (reverse ? graph.getIncomingConsumption(e) : graph.getOutgoingConsumption(e));
+                if (newDistance < distances[neighbor]) {
+                    distances[neighbor] = (int) Math.max(Integer.MIN_VALUE, newDistance);
+                    numImprovements[neighbor] += 1;
+                    if (numImprovements[neighbor] >= numNodes) {
+                        throw new IllegalStateException("Consumptions form a negative cycle through node " +
+                                neighbor);
+                    }
+                    if (!queued[neighbor]) {
+                        queue[(head + queueSize) % numNodes] = neighbor;
+                        queueSize += 1;
+                        queued[neighbor] = true;
+                    }
+                }
+            }
+        }
+        return distances;
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= heap[i]) {
+                break;
+            }
+            long swap = heap[parent];
+            heap[parent] = heap[i];
+            heap[i] = swap;
+            i = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int heapSize) {
+        int i = 0;
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < heapSize && heap[left] < heap[smallest]) {
+                smallest = left;
+            }
+            if (right < heapSize && heap[right] < heap[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            long swap = heap[smallest];
+            heap[smallest] = heap[i];
+            heap[i] = swap;
+            i = smallest;
+        }
+    }
+}
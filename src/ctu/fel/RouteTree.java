@@ -0,0 +1,150 @@
+package ctu.fel;
+
+import java.util.Arrays;
+
+/**
+ * Predecessors of the labels returned by a search. A returned label is copied from the arena of the search together
+ * with its ancestors not copied before, an entry holds the node, the parent entry and the cover edge of a label.
+ * The routes of the returned labels are reconstructed from the entries, so a returned label does not keep the arena,
+ * which holds every label generated by the search, reachable.
+ * Entries are only added by the thread running the search.
+ */
+class RouteTree {
+    static final int NO_PARENT = -1;
+
+    // Cover the cover edges of the entries belong to, null for searches on the graph
+    private final KPC kpc;
+
+    private int[] nodes = new int[64];
+    private int[] parents = new int[64];
+    private int[] coverEdges = new int[64];
+    private int size;
+
+    // Open-addressing map from the arena handles of the copied labels to their entries
+    private int[] handleKeys = new int[128];
+    private int[] handleEntries = new int[128];
+    private final IntList uncopied = new IntList();
+
+    RouteTree(KPC kpc) {
+        this.kpc = kpc;
+        Arrays.fill(handleKeys, -1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Materializes a label of the arena as an object holding its route in this tree
+     * @param arena arena of the search
+     * @param label handle of the label
+     * @return  label object with a copy of the parameters
+     */
+    Label toLabel(LabelArena arena, int label) {
+        return new Label(arena.getNode(label), new int[]{arena.getTime(label), arena.getMinSoCBefore(label),
+                arena.getConsumption(label), arena.getMaxSoCAfter(label)}, this, add(arena, label));
+    }
+
+    /**
+     * Copies a label and its ancestors not copied before
+     * @param arena arena of the search
+     * @param label handle of the label
+     * @return  entry of the label
+     */
+    int add(LabelArena arena, int label) {
+        // Ancestors are collected up to the first copied one and copied from the top, so parents precede children
+        uncopied.clear();
+        int parent = NO_PARENT;
+        for (int l = label; l != LabelArena.NO_PARENT; l = arena.getParent(l)) {
+            parent = getEntry(l);
+            if (parent != NO_PARENT) {
+                break;
+            }
+            uncopied.add(l);
+        }
+        for (int i = uncopied.size() - 1; i >= 0; --i) {
+            int l = uncopied.get(i);
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * size);
+                parents = Arrays.copyOf(parents, 2 * size);
+                coverEdges = Arrays.copyOf(coverEdges, 2 * size);
+            }
+            nodes[size] = arena.getNode(l);
+            parents[size] = parent;
+            coverEdges[size] = arena.getCoverEdge(l);
+            putEntry(l, size);
+            parent = size++;
+        }
+        return parent;
+    }
+
+    /**
+     * Reconstructs the route of an entry by following the parents to the source. Cover edges on the way
+     * are unpacked to the graph nodes they traverse, which needs a cover with node sequences.
+     * @param entry entry of the label
+     * @return  graph nodes of the route from the source to the node of the label
+     */
+    int[] getRoute(int entry) {
+        // Nodes are collected from the end of the route
+        IntList reversedRoute = new IntList();
+        for (int e = entry; e != NO_PARENT; e = parents[e]) {
+            if (coverEdges[e] == LabelArena.NO_COVER_EDGE) {
+                reversedRoute.add(nodes[e]);
+            }
+            else {
+                // The start node of the cover edge is added by the parent
+                int[] nodeSequence = kpc.getCoverEdgeNodeSequence(coverEdges[e]);
+                for (int i = nodeSequence.length - 1; i > 0; --i) {
+                    reversedRoute.add(nodeSequence[i]);
+                }
+            }
+        }
+
+        int[] route = new int[reversedRoute.size()];
+        for (int i = 0; i < route.length; ++i) {
+            route[i] = reversedRoute.get(route.length - 1 - i);
+        }
+        return route;
+    }
+
+    private int getEntry(int label) {
+        int mask = handleKeys.length - 1;
+        for (int slot = hash(label) & mask; handleKeys[slot] != -1; slot = (slot + 1) & mask) {
+            if (handleKeys[slot] == label) {
+                return handleEntries[slot];
+            }
+        }
+        return NO_PARENT;
+    }
+
+    private void putEntry(int label, int entry) {
+        if (2 * (size + 1) > handleKeys.length) {
+            int[] oldKeys = handleKeys;
+            int[] oldEntries = handleEntries;
+            handleKeys = new int[2 * oldKeys.length];
+            handleEntries = new int[2 * oldKeys.length];
+            Arrays.fill(handleKeys, -1);
+            for (int i = 0; i < oldKeys.length; ++i) {
+                if (oldKeys[i] != -1) {
+                    insert(oldKeys[i], oldEntries[i]);
+                }
+            }
+        }
+        insert(label, entry);
+    }
+
+    private void insert(int label, int entry) {
+        int mask = handleKeys.length - 1;
+        int slot = hash(label) & mask;
+        while (handleKeys[slot] != -1) {
+            slot = (slot + 1) & mask;
+        }
+        handleKeys[slot] = label;
+        handleEntries[slot] = entry;
+    }
+
+    private static int hash(int label) {
+        int h = label * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
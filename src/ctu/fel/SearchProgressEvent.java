@@ -0,0 +1,30 @@
+package ctu.fel;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+
+/**
+ * Periodic flight recorder event sampling the running queries, emitted by the recorder thread.
+ * The counters are read without synchronization, so they may lag behind the search slightly.
+ */
+@Name("ctu.fel.SearchProgress")
+@jdk.jfr.Label("Search Progress")
+@Category("Routing")
+@Description("Queue size and settled labels of a running query")
+@Period("100 ms")
+class SearchProgressEvent extends Event {
+    @jdk.jfr.Label("Source")
+    int source;
+
+    @jdk.jfr.Label("Variant")
+    String variant;
+
+    @jdk.jfr.Label("Queue Size")
+    int queueSize;
+
+    @jdk.jfr.Label("Settled Labels")
+    long numSettled;
+}
@@ -0,0 +1,200 @@
+package ctu.fel;
+
+/**
+ * Counters and phase durations of a search, filled by a search it is passed to. A search without statistics
+ * skips the counting and the timing, statistics are thus only collected when asked for.
+ * A generated label is either counted by one of the discarding counters or added to the open labels.
+ */
+class SearchStats {
+    long numGenerated;
+    long numInfeasible;
+    long numTargetPruned;
+    long numGridCovered;
+    long numDominatedByClosed;
+    long numDominatedByOpen;
+    long numEvicted;
+    long numSettled;
+    int peakQueueSize;
+    int peakLabelsPerNode;
+    double gridTimeRatio = 1;
+    int gridSoCStep;
+
+    long setupNanos;
+    long connectNanos;
+    long searchNanos;
+    long collectNanos;
+
+    /**
+     * @return  number of labels extended across an edge or a cover edge
+     */
+    long getNumGenerated() {
+        return numGenerated;
+    }
+
+    /**
+     * @return  number of generated labels violating the battery constraints
+     */
+    long getNumInfeasible() {
+        return numInfeasible;
+    }
+
+    /**
+     * @return  number of labels discarded by target pruning, including closed labels not expanded
+     */
+    long getNumTargetPruned() {
+        return numTargetPruned;
+    }
+
+    /**
+     * @return  number of generated labels discarded by grid dominance
+     */
+    long getNumGridCovered() {
+        return numGridCovered;
+    }
+
+    /**
+     * @return  number of generated labels dominated by the closed labels or the tSet of their node
+     */
+    long getNumDominatedByClosed() {
+        return numDominatedByClosed;
+    }
+
+    /**
+     * @return  number of generated labels dominated by an open label of their node
+     */
+    long getNumDominatedByOpen() {
+        return numDominatedByOpen;
+    }
+
+    /**
+     * @return  number of open labels removed as dominated by a new label
+     */
+    long getNumEvicted() {
+        return numEvicted;
+    }
+
+    /**
+     * @return  number of closed labels
+     */
+    long getNumSettled() {
+        return numSettled;
+    }
+
+    /**
+     * @return  maximal number of labels in the queue
+     */
+    int getPeakQueueSize() {
+        return peakQueueSize;
+    }
+
+    /**
+     * @return  maximal number of open and closed labels of a node
+     */
+    int getPeakLabelsPerNode() {
+        return peakLabelsPerNode;
+    }
+
+    /**
+     * Per-hop time bound of a search with grid dominance. A discarded label is not faster than the label of its cell
+     * by more than this ratio in time + 1, and linking a path keeps the ratio, so for a Pareto-optimal route of h
+     * edges (cover edges on a kPC cover) a returned label has time + 1 at most ratio^h times that of the route,
+     * as long as the approximating labels stay feasible.
+     * @return  1 + epsilon of the grid, 1 without grid dominance
+     */
+    double getGridTimeRatio() {
+        return gridTimeRatio;
+    }
+
+    /**
+     * Per-hop SoC bound of a search with grid dominance. A discarded label is not better than the label of its cell
+     * by more than one step in minSoCBefore, consumption and maxSoCAfter, and linking a path does not increase
+     * the differences, so for a Pareto-optimal route of h edges (cover edges on a kPC cover) a returned label is
+     * at most h steps worse in each of them, as long as the approximating labels stay feasible.
+     * @return  epsilon * batteryCapacity, 0 without grid dominance
+     */
+    int getGridSoCStep() {
+        return gridSoCStep;
+    }
+
+    /**
+     * @return  duration of the allocation of the search state [ns]
+     */
+    long getSetupNanos() {
+        return setupNanos;
+    }
+
+    /**
+     * @return  duration of connectSourceToKpc, 0 for searches on the graph [ns]
+     */
+    long getConnectNanos() {
+        return connectNanos;
+    }
+
+    /**
+     * @return  duration of the label-setting loop [ns]
+     */
+    long getSearchNanos() {
+        return searchNanos;
+    }
+
+    /**
+     * @return  duration of collecting the Pareto sets [ns]
+     */
+    long getCollectNanos() {
+        return collectNanos;
+    }
+
+    long getTotalNanos() {
+        return setupNanos + connectNanos + searchNanos + collectNanos;
+    }
+
+    /**
+     * Adds the counters of statistics collected by a worker thread
+     * @param other statistics of a part of the same search
+     */
+    void add(SearchStats other) {
+        numGenerated += other.numGenerated;
+        numInfeasible += other.numInfeasible;
+        numTargetPruned += other.numTargetPruned;
+        numGridCovered += other.numGridCovered;
+        numDominatedByClosed += other.numDominatedByClosed;
+        numDominatedByOpen += other.numDominatedByOpen;
+        numEvicted += other.numEvicted;
+        numSettled += other.numSettled;
+        peakQueueSize = Math.max(peakQueueSize, other.peakQueueSize);
+        peakLabelsPerNode = Math.max(peakLabelsPerNode, other.peakLabelsPerNode);
+    }
+
+    void updatePeakQueueSize(int queueSize) {
+        peakQueueSize = Math.max(peakQueueSize, queueSize);
+    }
+
+    void updatePeakLabelsPerNode(int numLabels) {
+        peakLabelsPerNode = Math.max(peakLabelsPerNode, numLabels);
+    }
+
+    @Override
+    public String toString() {
+        return "Labels generated -- " + numGenerated + "\n" +
+                "Infeasible -- " + numInfeasible + "\n" +
+                "Target pruned -- " + numTargetPruned + "\n" +
+                "Grid covered -- " + numGridCovered + "\n" +
+                "Dominated by closed labels -- " + numDominatedByClosed + "\n" +
+                "Dominated by open labels -- " + numDominatedByOpen + "\n" +
+                "Evicted from open labels -- " + numEvicted + "\n" +
+                "Settled -- " + numSettled + "\n" +
+                "Peak queue size -- " + peakQueueSize + "\n" +
+                "Peak labels per node -- " + peakLabelsPerNode + "\n" +
+                "Grid time ratio per hop -- " + gridTimeRatio + "\n" +
+                "Grid SoC step per hop -- " + gridSoCStep + "\n" +
+                "Setup duration [ms] -- " + toMillis(setupNanos) + "\n" +
+                "Connect duration [ms] -- " + toMillis(connectNanos) + "\n" +
+                "Search duration [ms] -- " + toMillis(searchNanos) + "\n" +
+                "Collect duration [ms] -- " + toMillis(collectNanos) + "\n" +
+                "Query duration [ms] -- " + toMillis(getTotalNanos());
+    }
+
+    static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+}
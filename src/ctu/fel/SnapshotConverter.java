@@ -0,0 +1,35 @@
+package ctu.fel;
+
+/**
+ * One-time conversion of the CSV graph files into the binary snapshot opened by the Graph(String) constructor.
+ * Usage: SnapshotConverter nodes.csv edges.csv goals.csv output.graph
+ */
+public class SnapshotConverter {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 4) {
+            System.out.println("Usage: SnapshotConverter <nodes.csv> <edges.csv> <goals.csv> <output.graph>");
+            return;
+        }
+
+        Graph graph = new Graph(args[0], args[1], args[2]);
+        long writeStart = System.nanoTime();
+        graph.writeSnapshot(args[3]);
+        long endTime = System.nanoTime();
+
+        System.out.println("Nodes -- " + graph.getNumNodes() + ", edges -- " + graph.getNumEdges() +
+                ", goals -- " + graph.getGoals().size());
+        printParseRate(graph);
+        System.out.println("Snapshot write duration [ms] -- " + ((endTime - writeStart) / 1000000));
+    }
+
+    /**
+     * Prints the duration and the row rate of reading the CSV files of a graph
+     * @param graph graph read from CSV files
+     */
+    static void printParseRate(Graph graph) {
+        double seconds = Math.max(1, graph.getParseNanos()) / 1e9;
+        System.out.println("CSV parse duration [ms] -- " + (graph.getParseNanos() / 1000000) + ", " +
+                (long) (graph.getNumParsedRows() / seconds) + " rows/s");
+    }
+}
@@ -0,0 +1,226 @@
+package ctu.fel;
+
+import java.util.Arrays;
+
+/**
+ * tSet of a node for t-discarding, holds the (minSoCBefore, consumption, maxSoCAfter) vectors of the closed
+ * labels of the node and answers whether a vector is dominated by any of them.
+ * Vectors are inserted only. New vectors are collected in a small buffer scanned linearly, a full buffer is
+ * merged with the static blocks of the logarithmic method, so there are O(log n) blocks of doubling sizes.
+ * A block is sorted by minSoCBefore, so the vectors with a low enough minSoCBefore form its prefix. The prefix is
+ * covered by O(log n) aligned segments of a merge sort tree, which hold their vectors sorted by consumption with
+ * the running maximum of maxSoCAfter, and every segment is tested by a binary search. A dominance query thus
+ * takes O(log^2 n) per block.
+ */
+class TSet {
+    private static final int BUFFER_SIZE = 32;
+
+    private final int[] bufferMinSoCBefore = new int[BUFFER_SIZE];
+    private final int[] bufferConsumptions = new int[BUFFER_SIZE];
+    private final int[] bufferMaxSoCAfter = new int[BUFFER_SIZE];
+    private int bufferSize;
+
+    // Block i holds BUFFER_SIZE * 2^i vectors or is null
+    private Block[] blocks = new Block[0];
+    private int size;
+
+    /**
+     * Static dominance structure over a set of vectors
+     */
+    private static class Block {
+        private final int size;
+        // Vectors sorted by minSoCBefore
+        private final int[] minSoCBefore;
+        // Per level of the merge sort tree, aligned segments of 2^level vectors sorted by consumption
+        private final int[][] consumptions;
+        private final int[][] maxSoCAfterPrefixMax;
+
+        Block(int[] minSoCBefore, int[] consumptions, int[] maxSoCAfter) {
+            size = minSoCBefore.length;
+
+            // Keys of minSoCBefore in the high and the index in the low half sort by minSoCBefore as signed longs
+            long[] order = new long[size];
+            for (int i = 0; i < size; ++i) {
+                order[i] = (long) minSoCBefore[i] << 32 | i;
+            }
+            Arrays.sort(order);
+
+            int numLevels = 32 - Integer.numberOfLeadingZeros(size);
+            this.minSoCBefore = new int[size];
+            this.consumptions = new int[numLevels][];
+            this.maxSoCAfterPrefixMax = new int[numLevels][];
+            int[] levelConsumptions = new int[size];
+            int[] levelMaxSoCAfter = new int[size];
+            for (int i = 0; i < size; ++i) {
+                int index = (int) order[i];
+                this.minSoCBefore[i] = minSoCBefore[index];
+                levelConsumptions[i] = consumptions[index];
+                levelMaxSoCAfter[i] = maxSoCAfter[index];
+            }
+
+            for (int level = 0; level < numLevels; ++level) {
+                int segmentSize = 1 << level;
+                if (level > 0) {
+                    // Merge pairs of segments of the previous level
+                    int[] previousConsumptions = levelConsumptions;
+                    int[] previousMaxSoCAfter = levelMaxSoCAfter;
+                    levelConsumptions = new int[size];
+                    levelMaxSoCAfter = new int[size];
+                    int half = segmentSize >> 1;
+                    for (int start = 0; start < size; start += segmentSize) {
+                        int left = start;
+                        int leftEnd = Math.min(start + half, size);
+                        int right = leftEnd;
+                        int rightEnd = Math.min(start + segmentSize, size);
+                        for (int k = start; k < rightEnd; ++k) {
+                            if (right >= rightEnd || (left < leftEnd &&
+                                    previousConsumptions[left] <= previousConsumptions[right])) {
+                                levelConsumptions[k] = previousConsumptions[left];
+                                levelMaxSoCAfter[k] = previousMaxSoCAfter[left++];
+                            }
+                            else {
+                                levelConsumptions[k] = previousConsumptions[right];
+                                levelMaxSoCAfter[k] = previousMaxSoCAfter[right++];
+                            }
+                        }
+                    }
+                }
+
+                int[] prefixMax = new int[size];
+                for (int k = 0; k < size; ++k) {
+                    prefixMax[k] = (k % segmentSize == 0) ? levelMaxSoCAfter[k] :
+                            Math.max(prefixMax[k - 1], levelMaxSoCAfter[k]);
+                }
+                this.consumptions[level] = levelConsumptions;
+                this.maxSoCAfterPrefixMax[level] = prefixMax;
+            }
+        }
+
+        boolean dominates(int minSoCBefore, int consumption, int maxSoCAfter) {
+            // Length of the prefix with a minSoCBefore not above the bound
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (this.minSoCBefore[middle] <= minSoCBefore) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            int prefix = low;
+
+            int start = 0;
+            for (int level = consumptions.length - 1; level >= 0; --level) {
+                int segmentSize = 1 << level;
+                if ((prefix & segmentSize) == 0) {
+                    continue;
+                }
+
+                // Last vector of the segment with a consumption not above the bound
+                int[] levelConsumptions = consumptions[level];
+                low = start;
+                high = start + segmentSize;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (levelConsumptions[middle] <= consumption) {
+                        low = middle + 1;
+                    }
+                    else {
+                        high = middle;
+                    }
+                }
+                if (low > start && maxSoCAfterPrefixMax[level][low - 1] >= maxSoCAfter) {
+                    return true;
+                }
+                start += segmentSize;
+            }
+            return false;
+        }
+
+        void copyTo(int[] minSoCBefore, int[] consumptions, int[] maxSoCAfter, int offset) {
+            // Level 0 keeps the minSoCBefore order, the running maximum of a single vector is its own value
+            System.arraycopy(this.minSoCBefore, 0, minSoCBefore, offset, size);
+            System.arraycopy(this.consumptions[0], 0, consumptions, offset, size);
+            System.arraycopy(this.maxSoCAfterPrefixMax[0], 0, maxSoCAfter, offset, size);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return  true if a vector of the set is not worse in every criterion
+     */
+    boolean dominates(int minSoCBefore, int consumption, int maxSoCAfter) {
+        for (int i = 0; i < bufferSize; ++i) {
+            if (bufferMinSoCBefore[i] <= minSoCBefore && bufferConsumptions[i] <= consumption &&
+                    bufferMaxSoCAfter[i] >= maxSoCAfter) {
+                return true;
+            }
+        }
+        for (Block block : blocks) {
+            if (block != null && block.dominates(minSoCBefore, consumption, maxSoCAfter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Epsilon variant of dominates(), a vector t of the set dominates if t * epsilon is not above the minimized
+     * criteria and t is not below the maximized criterion times epsilon, evaluated in float arithmetic.
+     * The float predicates are monotone in t, so they turn into integer bounds of a plain dominance query.
+     * @param epsilons  epsilon coefficients of all four path parameters
+     */
+    boolean epsilonDominates(int minSoCBefore, int consumption, int maxSoCAfter, float[] epsilons) {
+        return dominates(Planner.maxScaledNotAbove(epsilons[1], minSoCBefore),
+                Planner.maxScaledNotAbove(epsilons[2], consumption), Planner.minNotBelow(maxSoCAfter * epsilons[3]));
+    }
+
+    /**
+     * Adds the vector of a new closed label, vectors dominated by the set are skipped
+     */
+    void add(int minSoCBefore, int consumption, int maxSoCAfter) {
+        if (dominates(minSoCBefore, consumption, maxSoCAfter)) {
+            return;
+        }
+
+        bufferMinSoCBefore[bufferSize] = minSoCBefore;
+        bufferConsumptions[bufferSize] = consumption;
+        bufferMaxSoCAfter[bufferSize] = maxSoCAfter;
+        bufferSize += 1;
+        size += 1;
+        if (bufferSize < BUFFER_SIZE) {
+            return;
+        }
+
+        // Merge the buffer with the blocks of the lowest occupied levels into the first free level
+        int level = 0;
+        int mergedSize = BUFFER_SIZE;
+        while (level < blocks.length && blocks[level] != null) {
+            mergedSize += blocks[level].size;
+            level += 1;
+        }
+        if (level == blocks.length) {
+            blocks = Arrays.copyOf(blocks, level + 1);
+        }
+
+        int[] mergedMinSoCBefore = new int[mergedSize];
+        int[] mergedConsumptions = new int[mergedSize];
+        int[] mergedMaxSoCAfter = new int[mergedSize];
+        System.arraycopy(bufferMinSoCBefore, 0, mergedMinSoCBefore, 0, BUFFER_SIZE);
+        System.arraycopy(bufferConsumptions, 0, mergedConsumptions, 0, BUFFER_SIZE);
+        System.arraycopy(bufferMaxSoCAfter, 0, mergedMaxSoCAfter, 0, BUFFER_SIZE);
+        int offset = BUFFER_SIZE;
+        for (int l = 0; l < level; ++l) {
+            blocks[l].copyTo(mergedMinSoCBefore, mergedConsumptions, mergedMaxSoCAfter, offset);
+            offset += blocks[l].size;
+            blocks[l] = null;
+        }
+        blocks[level] = new Block(mergedMinSoCBefore, mergedConsumptions, mergedMaxSoCAfter);
+        bufferSize = 0;
+    }
+}
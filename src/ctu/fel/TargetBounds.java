@@ -0,0 +1,63 @@
+package ctu.fel;
+
+/**
+ * Lower bounds of the time and the consumption of the paths from every node to a target node, used to prune
+ * labels which can not reach the target with a route not dominated by a label already closed at the target.
+ * A label extended by any path to the target is not better than its optimistic parameters computed from
+ * the bounds, so if a closed target label dominates the optimistic parameters, it dominates every extension.
+ */
+abstract class TargetBounds {
+    /**
+     * Bound of the nodes the target can not be reached from
+     */
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * @return  the node id of the target
+     */
+    abstract int getTarget();
+
+    /**
+     * @param node  node id
+     * @return  lower bound of the time of a path from the node to the target, UNREACHABLE if there is no path
+     */
+    abstract int getTimeBound(int node);
+
+    /**
+     * @param node  node id
+     * @return  lower bound of the consumption of a path from the node to the target, which may be negative
+     */
+    abstract int getConsumptionBound(int node);
+
+    /**
+     * Computes the parameters a label would have in the best case after a path from its node to the target.
+     * The time and the consumption grow at least by their bounds, minSoCBefore is at least the consumption
+     * before the path plus the minSoCBefore of the path, which is not below the consumption of the path and 0,
+     * and maxSoCAfter drops at least by the consumption of the path and stays in the battery capacity.
+     * @param node  node of the label
+     * @param parameters    parameters of the label
+     * @param optimisticParameters  array to store the optimistic parameters to
+     * @return  false if the target can not be reached from the node, true otherwise
+     */
+    boolean getOptimisticParameters(int node, int[] parameters, int[] optimisticParameters) {
+        if (node == getTarget()) {
+            System.arraycopy(parameters, 0, optimisticParameters, 0, 4);
+            return true;
+        }
+        int timeBound = getTimeBound(node);
+        if (timeBound == UNREACHABLE) {
+            return false;
+        }
+        long consumptionBound = getConsumptionBound(node);
+        optimisticParameters[0] = saturate((long) parameters[0] + timeBound);
+        optimisticParameters[1] = saturate(Math.max(parameters[1], parameters[2] + Math.max(0, consumptionBound)));
+        optimisticParameters[2] = saturate(parameters[2] + consumptionBound);
+        optimisticParameters[3] = saturate(Math.min(parameters[3] - consumptionBound,
+                Planner.getBatteryCapacity()));
+        return true;
+    }
+
+    private static int saturate(long value) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+    }
+}